@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client;
+
+import org.vaadin.addon.gwtgraphics.client.transform.MatrixTransform;
+
+/**
+ * An axis-aligned rectangle given by its minimum and maximum coordinates.
+ * Bounds are immutable.
+ */
+public class Bounds {
+
+	protected final double minX, minY, maxX, maxY;
+
+	/**
+	 * Creates Bounds spanning the two given corners in any order.
+	 */
+	public Bounds(double x1, double y1, double x2, double y2) {
+		minX = Math.min(x1, x2);
+		minY = Math.min(y1, y2);
+		maxX = Math.max(x1, x2);
+		maxY = Math.max(y1, y2);
+	}
+
+	public double getMinX() {
+		return minX;
+	}
+
+	public double getMinY() {
+		return minY;
+	}
+
+	public double getMaxX() {
+		return maxX;
+	}
+
+	public double getMaxY() {
+		return maxY;
+	}
+
+	public double getWidth() {
+		return maxX - minX;
+	}
+
+	public double getHeight() {
+		return maxY - minY;
+	}
+
+	public boolean contains(double x, double y) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	public boolean contains(Bounds b) {
+		return b.minX >= minX && b.maxX <= maxX && b.minY >= minY
+				&& b.maxY <= maxY;
+	}
+
+	public boolean intersects(Bounds b) {
+		return b.minX <= maxX && b.maxX >= minX && b.minY <= maxY
+				&& b.maxY >= minY;
+	}
+
+	/**
+	 * Returns the smallest Bounds containing both these and the given
+	 * Bounds.
+	 *
+	 * @param b
+	 *            other Bounds, may be null
+	 * @return the union
+	 */
+	public Bounds union(Bounds b) {
+		if (b == null) {
+			return this;
+		}
+		return new Bounds(Math.min(minX, b.minX), Math.min(minY, b.minY),
+				Math.max(maxX, b.maxX), Math.max(maxY, b.maxY));
+	}
+
+	/**
+	 * Returns these Bounds grown by the given amount on every side.
+	 */
+	public Bounds expand(double amount) {
+		if (amount == 0) {
+			return this;
+		}
+		return new Bounds(minX - amount, minY - amount, maxX + amount, maxY
+				+ amount);
+	}
+
+	/**
+	 * Returns the axis-aligned bounds of these Bounds transformed with the
+	 * given matrix.
+	 *
+	 * @param t
+	 *            the transform
+	 * @return the transformed Bounds
+	 */
+	public Bounds transform(MatrixTransform t) {
+		return transform(t.getA(), t.getB(), t.getC(), t.getD(), t.getTX(),
+				t.getTY());
+	}
+
+	/**
+	 * Returns the axis-aligned bounds of these Bounds transformed with the
+	 * matrix <code>(a, b, c, d, tx, ty)</code>.
+	 */
+	public Bounds transform(double a, double b, double c, double d,
+			double tx, double ty) {
+		if (b == 0 && c == 0) {
+			return new Bounds(a * minX + tx, d * minY + ty, a * maxX + tx, d
+					* maxY + ty);
+		}
+		// x' = a * x + c * y + tx, y' = b * x + d * y + ty; the extremes of
+		// each term are found independently
+		double x1 = Math.min(a * minX, a * maxX) + Math.min(c * minY, c * maxY);
+		double x2 = Math.max(a * minX, a * maxX) + Math.max(c * minY, c * maxY);
+		double y1 = Math.min(b * minX, b * maxX) + Math.min(d * minY, d * maxY);
+		double y2 = Math.max(b * minX, b * maxX) + Math.max(d * minY, d * maxY);
+		return new Bounds(x1 + tx, y1 + ty, x2 + tx, y2 + ty);
+	}
+
+	@Override
+	public String toString() {
+		return "Bounds[" + minX + "," + minY + " - " + maxX + "," + maxY + "]";
+	}
+
+}
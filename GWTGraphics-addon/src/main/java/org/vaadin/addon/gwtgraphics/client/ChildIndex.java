@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client;
+
+import java.util.List;
+
+/**
+ * Finds the position of a child in the child list of a container without a
+ * linear search. Each child remembers its index in its parent, relative to
+ * an offset shared by all children. Adding or removing a child at either
+ * end of the list is constant time: at the end only the index of the child
+ * is recorded, and at the start the offset is moved. Inserting or removing
+ * a child elsewhere invalidates the indexes after it, which are refreshed
+ * by the next lookup that needs them, so that lookup costs O(n - i) for a
+ * change at position i. The list itself still shifts its elements.
+ */
+class ChildIndex {
+
+	private final List<VectorObject> children;
+
+	/**
+	 * The remembered indexes of the children before this position are
+	 * correct.
+	 */
+	private int valid;
+
+	/**
+	 * Added to the position of a child to get its remembered index.
+	 */
+	private int offset;
+
+	ChildIndex(List<VectorObject> children) {
+		this.children = children;
+	}
+
+	/**
+	 * Returns the position of the given child.
+	 *
+	 * @return the index or -1 if the object is not in the list
+	 */
+	int indexOf(VectorObject vo) {
+		int size = children.size();
+		int i = vo.indexInParent - offset;
+		if (i >= 0 && i < size && children.get(i) == vo) {
+			return i;
+		}
+		if (i >= 0 && i < valid) {
+			// the list has been changed without notification
+			valid = 0;
+		}
+		if (valid == 0) {
+			offset = 0;
+		}
+		for (int j = valid; j < size; j++) {
+			children.get(j).indexInParent = j + offset;
+		}
+		valid = size;
+		i = vo.indexInParent - offset;
+		return i >= 0 && i < size && children.get(i) == vo ? i : -1;
+	}
+
+	/**
+	 * Must be called after the given child has been appended to the list.
+	 */
+	void appended(VectorObject vo) {
+		int index = children.size() - 1;
+		vo.indexInParent = index + offset;
+		if (valid == index) {
+			valid++;
+		}
+	}
+
+	/**
+	 * Must be called after the given child has been inserted into the list
+	 * at the given position.
+	 */
+	void inserted(VectorObject vo, int index) {
+		if (index == children.size() - 1) {
+			appended(vo);
+		} else if (index == 0) {
+			offset--;
+			vo.indexInParent = offset;
+			valid++;
+		} else {
+			changed(index);
+		}
+	}
+
+	/**
+	 * Must be called after the child at the given position has been removed
+	 * from the list.
+	 */
+	void removed(int index) {
+		if (index == 0 && valid > 0) {
+			offset++;
+			valid--;
+		} else {
+			changed(index);
+		}
+	}
+
+	/**
+	 * Must be called after the children at or after the given position have
+	 * moved.
+	 */
+	void changed(int from) {
+		if (from < valid) {
+			valid = from;
+		}
+	}
+}
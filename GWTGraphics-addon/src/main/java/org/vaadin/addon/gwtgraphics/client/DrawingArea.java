@@ -16,18 +16,33 @@
 package org.vaadin.addon.gwtgraphics.client;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import org.vaadin.addon.gwtgraphics.client.impl.CanvasRenderer;
 import org.vaadin.addon.gwtgraphics.client.impl.SVGImpl;
+import org.vaadin.addon.gwtgraphics.client.impl.util.SpatialIndex;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
+import com.google.gwt.canvas.client.Canvas;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.CanvasElement;
 import com.google.gwt.dom.client.DivElement;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.dom.client.DoubleClickEvent;
 import com.google.gwt.event.dom.client.DoubleClickHandler;
+import com.google.gwt.event.dom.client.DomEvent;
 import com.google.gwt.event.dom.client.HasAllMouseHandlers;
 import com.google.gwt.event.dom.client.HasClickHandlers;
 import com.google.gwt.event.dom.client.HasDoubleClickHandlers;
@@ -45,6 +60,7 @@ import com.google.gwt.event.dom.client.MouseUpHandler;
 import com.google.gwt.event.dom.client.MouseWheelEvent;
 import com.google.gwt.event.dom.client.MouseWheelHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.ui.Widget;
 
 /**
@@ -79,11 +95,83 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 
 	protected static final SVGImpl impl = GWT.create(SVGImpl.class);
 
+	/**
+	 * Predefined render modes<br/>
+	 * <code>DOM</code>(default): every VectorObject is an SVG or VML element<br/>
+	 * <code>CANVAS</code>: all VectorObjects are painted into a single canvas
+	 * element. Events are dispatched by geometric hit testing only.
+	 */
+	public static enum RenderMode {
+		DOM, CANVAS
+	}
+
 	protected final Element root;
 
+	protected final RenderMode renderMode;
+
+	protected CanvasRenderer canvasRenderer;
+
+	protected AnimationHandle repaintFrame;
+
+	/**
+	 * Cell size of the spatial index used for event dispatch, in pixels.
+	 */
+	protected static final double INDEX_CELL_SIZE = 64;
+
+	/**
+	 * Area space bounds of all VectorObjects except Groups. Created on the
+	 * first query.
+	 */
+	protected SpatialIndex<VectorObject> spatialIndex;
+
+	/**
+	 * Objects whose bounds have to be refreshed before the next query.
+	 */
+	protected List<VectorObject> boundsUpdates = new ArrayList<VectorObject>();
+
+	/**
+	 * True if mouse events of the VectorObjects are delegated to this
+	 * DrawingArea, fixed at construction.
+	 */
+	protected final boolean eventDelegation;
+
+	/**
+	 * Event types sunk on behalf of VectorObjects when event delegation is
+	 * enabled.
+	 */
+	protected int delegatedEvents;
+
+	protected boolean inputCoalescing;
+
+	protected AnimationHandle inputFrame;
+
+	/**
+	 * Mouse move and wheel events waiting for the next frame, keyed by the
+	 * widget that received them.
+	 */
+	private final Map<Widget, PendingInput> pendingInput = new LinkedHashMap<Widget, PendingInput>();
+
+	/**
+	 * Union of the bounds of the children, see {@link #getContentBounds()}.
+	 */
+	protected Bounds contentBounds;
+	protected boolean contentBoundsCached;
+
 	protected List<VectorObject> childrens = new ArrayList<VectorObject>();
+	private final ChildIndex childIndex = new ChildIndex(childrens);
 	protected List<Definition> definitions = new ArrayList<Definition>();
 
+	/**
+	 * The layers of this DrawingArea by their order.
+	 */
+	protected TreeMap<Integer, Layer> layers = new TreeMap<Integer, Layer>();
+
+	/**
+	 * Size of a headless DrawingArea, which has no element to hold it.
+	 */
+	private int headlessWidth;
+	private int headlessHeight;
+
 	/**
 	 * Creates a DrawingArea of given width and height.
 	 *
@@ -93,83 +181,609 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 *            the height of DrawingArea in pixels
 	 */
 	public DrawingArea(int width, int height) {
+		this(width, height, RenderMode.DOM);
+	}
+
+	/**
+	 * Creates a DrawingArea of given width and height using the given render
+	 * mode. If the browser doesn't support canvas, the DOM mode is used.
+	 *
+	 * @param width
+	 *            the width of DrawingArea in pixels
+	 * @param height
+	 *            the height of DrawingArea in pixels
+	 * @param renderMode
+	 *            the render mode
+	 */
+	public DrawingArea(int width, int height, RenderMode renderMode) {
+		this(width, height, renderMode, false);
+	}
+
+	/**
+	 * Creates a DrawingArea of given width and height using the given render
+	 * mode and optionally event delegation. With event delegation, mouse
+	 * handlers added to the VectorObjects of this DrawingArea don't sink
+	 * events on their own elements. Instead the DrawingArea listens once per
+	 * event type, and only for the types that have handlers, and dispatches
+	 * each event to the VectorObject whose element is the event target and
+	 * then to its enclosing Groups. Event delegation is not available in the
+	 * canvas mode.
+	 *
+	 * @param width
+	 *            the width of DrawingArea in pixels
+	 * @param height
+	 *            the height of DrawingArea in pixels
+	 * @param renderMode
+	 *            the render mode
+	 * @param eventDelegation
+	 *            true to delegate the events of the VectorObjects to this
+	 *            DrawingArea
+	 */
+	public DrawingArea(int width, int height, RenderMode renderMode,
+			boolean eventDelegation) {
+		if (isHeadless()) {
+			this.renderMode = RenderMode.DOM;
+			this.eventDelegation = false;
+			root = null;
+			headlessWidth = width;
+			headlessHeight = height;
+			return;
+		}
 		DivElement container = Document.get().createDivElement();
 		setElement(container);
 
-		root = getImpl().createDrawingArea(container, width, height);
+		if (renderMode == RenderMode.CANVAS && !Canvas.isSupported()) {
+			renderMode = RenderMode.DOM;
+		}
+		this.renderMode = renderMode;
+		this.eventDelegation = eventDelegation
+				&& renderMode != RenderMode.CANVAS;
+		if (renderMode == RenderMode.CANVAS) {
+			CanvasElement canvas = Document.get().createCanvasElement();
+			container.appendChild(canvas);
+			root = canvas;
+			setWidth(width);
+			setHeight(height);
+			canvasRenderer = new CanvasRenderer(canvas, new ScheduledCommand() {
+				@Override
+				public void execute() {
+					scheduleRepaint();
+				}
+			});
+		} else {
+			root = getImpl().createDrawingArea(container, width, height);
+		}
+
+		// With event delegation the objects are resolved from the event
+		// target instead, see onBrowserEvent()
+		if (!this.eventDelegation) {
+			addMouseMoveHandler(new MouseMoveHandler() {
+				@Override
+				public void onMouseMove(MouseMoveEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addClickHandler(new ClickHandler() {
+				@Override
+				public void onClick(ClickEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addDoubleClickHandler(new DoubleClickHandler() {
+				@Override
+				public void onDoubleClick(DoubleClickEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addMouseDownHandler(new MouseDownHandler() {
+				@Override
+				public void onMouseDown(MouseDownEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addMouseOutHandler(new MouseOutHandler() {
+				@Override
+				public void onMouseOut(MouseOutEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addMouseOverHandler(new MouseOverHandler() {
+				@Override
+				public void onMouseOver(MouseOverEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addMouseUpHandler(new MouseUpHandler() {
+				@Override
+				public void onMouseUp(MouseUpEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+			addMouseWheelHandler(new MouseWheelHandler() {
+				@Override
+				public void onMouseWheel(MouseWheelEvent event) {
+					fireEventForContainingObejcts(event);
+				}
+			});
+		}
+	}
+
+	private void fireEventForContainingObejcts(MouseEvent<?> event) {
+		int x = event.getRelativeX(getElement());
+		int y = event.getRelativeY(getElement());
+		for (VectorObject vo : getObjectsAt(x, y)) {
+			vo.fireEvent(event);
+		}
+	}
 
-		addMouseMoveHandler(new MouseMoveHandler() {
-			@Override
-			public void onMouseMove(MouseMoveEvent event) {
-				fireEventForContainingObejcts(event);
+	/**
+	 * Starts listening to the given event types for delegated dispatch.
+	 * Event types are never unsunk.
+	 */
+	void sinkDelegatedEvents(int bits) {
+		if (!eventDelegation || (delegatedEvents & bits) == bits) {
+			return;
+		}
+		delegatedEvents |= bits;
+		sinkEvents(bits);
+	}
+
+	/**
+	 * Dispatches delegated events to the VectorObject whose element is the
+	 * event target and then to its enclosing Groups. With input coalescing
+	 * mouse move and wheel events are deferred to the next animation frame.
+	 */
+	@Override
+	public void onBrowserEvent(Event event) {
+		if (!deferEvent(this, event)) {
+			super.onBrowserEvent(event);
+			dispatchDelegated(event, null);
+		}
+	}
+
+	private void dispatchDelegated(Event event, Integer wheelDelta) {
+		int type = event.getTypeInt();
+		if ((delegatedEvents & type) == 0) {
+			return;
+		}
+		EventTarget target = event.getEventTarget();
+		if (!Element.is(target)) {
+			return;
+		}
+		VectorObject vo = null;
+		Element element = Element.as(target);
+		while (vo == null && element != null && element != getElement()) {
+			vo = VectorObject.getObject(element);
+			element = element.getParentElement();
+		}
+		while (vo != null) {
+			if ((vo.delegatedEvents & type) != 0) {
+				fire(vo, event, wheelDelta);
 			}
-		});
-		addClickHandler(new ClickHandler() {
-			@Override
-			public void onClick(ClickEvent event) {
-				fireEventForContainingObejcts(event);
+			Widget parent = vo.getParent();
+			vo = parent instanceof VectorObject ? (VectorObject) parent : null;
+		}
+	}
+
+	/**
+	 * Fires the native event to the handlers of the given widget. If
+	 * wheelDelta is not null, it replaces the delta of a wheel event.
+	 */
+	private static void fire(Widget source, Event event, Integer wheelDelta) {
+		if (wheelDelta != null && event.getTypeInt() == Event.ONMOUSEWHEEL) {
+			CoalescedMouseWheelEvent wheel = new CoalescedMouseWheelEvent(
+					wheelDelta);
+			wheel.setNativeEvent(event);
+			wheel.setRelativeElement(source.getElement());
+			source.fireEvent(wheel);
+		} else {
+			DomEvent.fireNativeEvent(event, source, source.getElement());
+		}
+	}
+
+	/**
+	 * Enables or disables input coalescing. When enabled, mouse move and
+	 * mouse wheel events received by this DrawingArea and its VectorObjects
+	 * are dispatched at most once per animation frame and per listening
+	 * widget. The latest move event is delivered and the wheel event reports
+	 * the delta accumulated during the frame. Coalesced events are delivered
+	 * after the browser has handled them, so preventDefault() has no effect
+	 * on them. Disabled by default.
+	 *
+	 * @param enabled
+	 *            true to coalesce move and wheel events
+	 */
+	public void setInputCoalescing(boolean enabled) {
+		if (!enabled) {
+			flushInput();
+		}
+		inputCoalescing = enabled;
+	}
+
+	public boolean isInputCoalescing() {
+		return inputCoalescing;
+	}
+
+	/**
+	 * Queues a mouse move or wheel event of the given widget if input
+	 * coalescing is enabled.
+	 *
+	 * @return true if the event was queued
+	 */
+	boolean deferEvent(Widget source, Event event) {
+		if (!inputCoalescing) {
+			return false;
+		}
+		int type = event.getTypeInt();
+		if (type != Event.ONMOUSEMOVE && type != Event.ONMOUSEWHEEL) {
+			return false;
+		}
+		PendingInput pending = pendingInput.get(source);
+		if (pending == null) {
+			pending = new PendingInput();
+			pendingInput.put(source, pending);
+		}
+		if (type == Event.ONMOUSEMOVE) {
+			pending.move = event;
+		} else {
+			pending.wheel = event;
+			pending.wheelDelta += event.getMouseWheelVelocityY();
+		}
+		if (inputFrame == null) {
+			inputFrame = AnimationScheduler.get().requestAnimationFrame(
+					new AnimationCallback() {
+						@Override
+						public void execute(double timestamp) {
+							inputFrame = null;
+							flushInput();
+						}
+					}, getElement());
+		}
+		return true;
+	}
+
+	/**
+	 * Dispatches the queued mouse move and wheel events immediately, in the
+	 * order their widgets first received events during the frame.
+	 */
+	public void flushInput() {
+		if (inputFrame != null) {
+			inputFrame.cancel();
+			inputFrame = null;
+		}
+		if (pendingInput.isEmpty()) {
+			return;
+		}
+		List<Map.Entry<Widget, PendingInput>> entries = new ArrayList<Map.Entry<Widget, PendingInput>>(
+				pendingInput.entrySet());
+		pendingInput.clear();
+		for (Map.Entry<Widget, PendingInput> entry : entries) {
+			Widget source = entry.getKey();
+			PendingInput pending = entry.getValue();
+			if (pending.move != null) {
+				fire(source, pending.move, null);
+				if (source == this) {
+					dispatchDelegated(pending.move, null);
+				}
 			}
-		});
-		addDoubleClickHandler(new DoubleClickHandler() {
-			@Override
-			public void onDoubleClick(DoubleClickEvent event) {
-				fireEventForContainingObejcts(event);
+			if (pending.wheel != null) {
+				fire(source, pending.wheel, pending.wheelDelta);
+				if (source == this) {
+					dispatchDelegated(pending.wheel, pending.wheelDelta);
+				}
 			}
-		});
-		addMouseDownHandler(new MouseDownHandler() {
-			@Override
-			public void onMouseDown(MouseDownEvent event) {
-				fireEventForContainingObejcts(event);
+		}
+		// let handlers' changes reach the screen in this same frame
+		RedrawScheduler.get().flush();
+	}
+
+	/**
+	 * Latest move and wheel events of a widget within a frame.
+	 */
+	private static class PendingInput {
+		Event move;
+		Event wheel;
+		int wheelDelta;
+	}
+
+	/**
+	 * Wheel event reporting the delta of several coalesced wheel events.
+	 */
+	private static class CoalescedMouseWheelEvent extends MouseWheelEvent {
+
+		private final int deltaY;
+
+		CoalescedMouseWheelEvent(int deltaY) {
+			this.deltaY = deltaY;
+		}
+
+		@Override
+		public int getDeltaY() {
+			return deltaY;
+		}
+	}
+
+	/**
+	 * Returns the VectorObjects containing the given point, including the
+	 * ones inside Groups. Only objects whose bounds contain the point are
+	 * tested with {@link VectorObject#contains(double, double)}.
+	 *
+	 * @param x
+	 *            x-coordinate relative to this DrawingArea in pixels
+	 * @param y
+	 *            y-coordinate relative to this DrawingArea in pixels
+	 * @return the objects containing the point, in no particular order
+	 */
+	public List<VectorObject> getObjectsAt(double x, double y) {
+		updateSpatialIndex();
+		List<VectorObject> candidates = new ArrayList<VectorObject>();
+		spatialIndex.query(x, y, candidates);
+		List<VectorObject> result = new ArrayList<VectorObject>(candidates.size());
+		for (VectorObject vo : candidates) {
+			if (containsAreaPoint(vo, x, y)) {
+				result.add(vo);
 			}
-		});
-		addMouseOutHandler(new MouseOutHandler() {
-			@Override
-			public void onMouseOut(MouseOutEvent event) {
-				fireEventForContainingObejcts(event);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the union of the bounds of all VectorObjects in this
+	 * DrawingArea, for example for zoom-to-fit. The result is cached and
+	 * only the changed objects and their enclosing Groups are recomputed.
+	 *
+	 * @return the content bounds or null if there is no content
+	 */
+	public Bounds getContentBounds() {
+		if (!contentBoundsCached) {
+			contentBounds = null;
+			for (VectorObject vo : childrens) {
+				Bounds b = vo.getBounds();
+				if (b != null) {
+					contentBounds = b.union(contentBounds);
+				}
 			}
-		});
-		addMouseOverHandler(new MouseOverHandler() {
-			@Override
-			public void onMouseOver(MouseOverEvent event) {
-				fireEventForContainingObejcts(event);
+			contentBoundsCached = true;
+		}
+		return contentBounds;
+	}
+
+	void contentBoundsChanged() {
+		contentBoundsCached = false;
+		contentBounds = null;
+	}
+
+	/**
+	 * Returns the VectorObjects, excluding Groups, whose bounds intersect
+	 * the given area, for example to cull objects outside the viewport.
+	 * Groups whose aggregated bounds are outside the area are skipped
+	 * without visiting their children. Inside rotated Groups the test is
+	 * conservative.
+	 *
+	 * @param area
+	 *            the area in the coordinates of this DrawingArea
+	 * @return the objects intersecting the area in painting order
+	 */
+	public List<VectorObject> getObjectsIn(Bounds area) {
+		List<VectorObject> result = new ArrayList<VectorObject>();
+		for (VectorObject vo : childrens) {
+			collectObjectsIn(vo, area, result);
+		}
+		return result;
+	}
+
+	private static void collectObjectsIn(VectorObject vo, Bounds area,
+			List<VectorObject> result) {
+		Bounds b = vo.getBounds();
+		if (b == null || !b.intersects(area)) {
+			return;
+		}
+		if (vo instanceof Group) {
+			double[] inv = vo.getInverseTransform();
+			if (inv == null) {
+				return;
+			}
+			Bounds local = area.transform(inv[0], inv[1], inv[2], inv[3],
+					inv[4], inv[5]);
+			Group group = (Group) vo;
+			for (int i = 0; i < group.getVectorObjectCount(); i++) {
+				collectObjectsIn(group.getVectorObject(i), local, result);
 			}
-		});
-		addMouseUpHandler(new MouseUpHandler() {
-			@Override
-			public void onMouseUp(MouseUpEvent event) {
-				fireEventForContainingObejcts(event);
+		} else {
+			result.add(vo);
+		}
+	}
+
+	/**
+	 * Tests the given point, which is relative to this DrawingArea, against a
+	 * possibly nested VectorObject by mapping it into the coordinate system
+	 * of the object's parent.
+	 */
+	private boolean containsAreaPoint(VectorObject vo, double x, double y) {
+		Widget parent = vo.getParent();
+		if (parent instanceof VectorObject) {
+			List<VectorObject> ancestors = new ArrayList<VectorObject>();
+			for (Widget p = parent; p instanceof VectorObject; p = p.getParent()) {
+				ancestors.add((VectorObject) p);
 			}
-		});
-		addMouseWheelHandler(new MouseWheelHandler() {
-			@Override
-			public void onMouseWheel(MouseWheelEvent event) {
-				fireEventForContainingObejcts(event);
+			for (int i = ancestors.size() - 1; i >= 0; i--) {
+				double[] inv = ancestors.get(i).getInverseTransform();
+				if (inv == null) {
+					return false;
+				}
+				double lx = inv[0] * x + inv[2] * y + inv[4];
+				y = inv[1] * x + inv[3] * y + inv[5];
+				x = lx;
 			}
-		});
+		}
+		return vo.contains(x, y);
 	}
 
-	private void fireEventForContainingObejcts(MouseEvent event) {
-		final int clientX = event.getClientX();
-		final int clientY = event.getClientY();
-		for (int i=0; i<getVectorObjectCount(); i++) {
-                        final VectorObject vectorObject = getVectorObject(i);
-                        if (vectorObject.contains(clientX, clientY)) {
-                                vectorObject.fireEvent(event);
-                        }
-                }
+	/**
+	 * Brings the spatial index up to date, building it on the first call.
+	 */
+	protected void updateSpatialIndex() {
+		if (spatialIndex == null) {
+			spatialIndex = new SpatialIndex<VectorObject>(INDEX_CELL_SIZE);
+			boundsUpdates.clear();
+			for (VectorObject vo : childrens) {
+				index(vo);
+			}
+			return;
+		}
+		if (boundsUpdates.isEmpty()) {
+			return;
+		}
+		List<VectorObject> updates = boundsUpdates;
+		boundsUpdates = new ArrayList<VectorObject>();
+		for (VectorObject vo : updates) {
+			if (vo.getDrawingArea() == this) {
+				index(vo);
+			}
+		}
+	}
+
+	/**
+	 * Puts the given object, or all objects inside a Group, into the spatial
+	 * index.
+	 */
+	private void index(VectorObject vo) {
+		vo.boundsDirty = false;
+		if (vo instanceof Group) {
+			Group group = (Group) vo;
+			for (int i = 0; i < group.getVectorObjectCount(); i++) {
+				index(group.getVectorObject(i));
+			}
+			return;
+		}
+		Bounds b = vo.getBounds();
+		for (Widget p = vo.getParent(); b != null && p instanceof VectorObject; p = p.getParent()) {
+			b = b.transform(((VectorObject) p).getTransform());
+		}
+		if (b == null || Double.isNaN(b.getWidth()) || Double.isNaN(b.getHeight())) {
+			spatialIndex.remove(vo);
+		} else {
+			spatialIndex.put(vo, b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY());
+		}
+	}
+
+	/**
+	 * Called when the bounds of a VectorObject in this DrawingArea may have
+	 * changed, or when it has been added.
+	 */
+	void boundsChanged(VectorObject vo) {
+		if (spatialIndex != null) {
+			boundsUpdates.add(vo);
+		}
+	}
+
+	/**
+	 * Called when a VectorObject is removed from this DrawingArea.
+	 */
+	void objectRemoved(VectorObject vo) {
+		if (spatialIndex == null) {
+			return;
+		}
+		if (vo instanceof Group) {
+			Group group = (Group) vo;
+			for (int i = 0; i < group.getVectorObjectCount(); i++) {
+				objectRemoved(group.getVectorObject(i));
+			}
+		} else {
+			spatialIndex.remove(vo);
+		}
+		// flag it again so that changes are reported after it is re-added
+		vo.boundsDirty = true;
 	}
 
 	protected SVGImpl getImpl() {
 		return impl;
 	}
 
+	/**
+	 * Returns true if there is no rendering backend, as on a plain JVM after
+	 * <code>GWTMockUtilities.disarm()</code>. A headless DrawingArea has no
+	 * element and handles no events, but its scene can still be built and
+	 * serialized with
+	 * {@link org.vaadin.addon.gwtgraphics.client.impl.SVGSerializer}.
+	 *
+	 * @return true if this DrawingArea has no element
+	 */
+	protected boolean isHeadless() {
+		return getImpl() == null;
+	}
+
+	/**
+	 * Returns true if the children are rendered as elements below the root.
+	 */
+	private boolean isDomRendered() {
+		return renderMode == RenderMode.DOM && !isHeadless();
+	}
+
+	/**
+	 * Returns true if the mouse events of the VectorObjects are delegated to
+	 * this DrawingArea.
+	 *
+	 * @return true if event delegation is enabled
+	 */
+	public boolean isEventDelegation() {
+		return eventDelegation;
+	}
+
+	/**
+	 * Returns the render mode chosen at construction time.
+	 *
+	 * @return the render mode
+	 */
+	public RenderMode getRenderMode() {
+		return renderMode;
+	}
+
+	/**
+	 * Requests the canvas to be repainted on the next animation frame. Any
+	 * number of requests within the same frame result in a single repaint.
+	 * Does nothing in DOM mode.
+	 */
+	public void scheduleRepaint() {
+		if (canvasRenderer == null || repaintFrame != null) {
+			return;
+		}
+		repaintFrame = AnimationScheduler.get().requestAnimationFrame(
+				new AnimationCallback() {
+					@Override
+					public void execute(double timestamp) {
+						// redraws queued for this frame are covered by this repaint
+						RedrawScheduler.get().flush();
+						repaintFrame = null;
+						repaint();
+					}
+				}, root);
+	}
+
+	/**
+	 * Repaints the canvas immediately. Does nothing in DOM mode.
+	 */
+	public void repaint() {
+		if (repaintFrame != null) {
+			repaintFrame.cancel();
+			repaintFrame = null;
+		}
+		if (canvasRenderer != null) {
+			canvasRenderer.paint(this);
+		}
+	}
+
 	/**
 	 * Returns a String that indicates what graphics renderer is used. This
-	 * String is "VML" for Internet Explorer and "SVG" for other browsers.
+	 * String is "VML" for Internet Explorer and "SVG" for other browsers, or
+	 * "Canvas" in canvas mode.
 	 *
 	 * @return the used graphics renderer
 	 */
 	public String getRendererString() {
+		if (renderMode == RenderMode.CANVAS) {
+			return "Canvas";
+		}
 		return getImpl().getRendererString();
 	}
 
@@ -180,18 +794,151 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 * gwtgraphics.client.VectorObject)
 	 */
 	public VectorObject add(VectorObject vo) {
-		getImpl().add(root, vo.getElement(), vo.isAttached());
+		checkNotLayer(vo);
+		if (isDomRendered()) {
+			getImpl().add(root, vo.getElement(), vo.isAttached());
+		}
 		vo.setParent(this);
 		childrens.add(vo);
+		childIndex.appended(vo);
+		scheduleRepaint();
 		return vo;
 	}
 
+	/**
+	 * Adds all given VectorObjects to this DrawingArea. Unlike calling
+	 * {@link #add(VectorObject)} for each object, the pending redraws of the
+	 * objects are done while they are still detached and their elements are
+	 * inserted with a single DOM operation, so that building a large scene
+	 * does not invalidate the document style once per object.
+	 *
+	 * @param objects
+	 *            the VectorObjects to add, none of which may have a parent
+	 * @throws IllegalStateException
+	 *             if one of the objects already has a parent, in which case
+	 *             none of them is added
+	 */
+	public void addAll(Collection<? extends VectorObject> objects) {
+		Group.checkNoParents(objects);
+		for (VectorObject vo : objects) {
+			checkNotLayer(vo);
+		}
+		if (isDomRendered()) {
+			getImpl().addAll(root, Group.detachedElements(objects));
+		}
+		for (VectorObject vo : objects) {
+			vo.setParent(this);
+			childrens.add(vo);
+			childIndex.appended(vo);
+		}
+		scheduleRepaint();
+	}
+
+	/**
+	 * Returns the definitions added to this DrawingArea.
+	 *
+	 * @return an unmodifiable list of definitions
+	 */
+	public List<Definition> getDefinitions() {
+		return Collections.unmodifiableList(definitions);
+	}
+
 	public Definition add(Definition def) {
-		getImpl().add(root, def.getElement());
+		if (isDomRendered()) {
+			getImpl().add(root, def.getElement());
+		}
 		definitions.add(def);
 		return def;
 	}
 
+	/**
+	 * Creates a new named Layer and places it above the layers with a lower
+	 * order and below the layers with a higher one. Layers keep this order
+	 * regardless of the objects added to them, so for example selected
+	 * objects can be kept above the rest of a scene by putting them into a
+	 * layer of their own. Layers cannot be moved with
+	 * {@link #insert(VectorObject, int)} or {@link #bringToFront(VectorObject)}.
+	 * <p>
+	 * Objects added to the DrawingArea itself are ordered relative to the
+	 * layers like any other child, so {@link #add(VectorObject)} places them
+	 * above all layers. The order of a scene is only defined by the layers if
+	 * all of its objects are added to them.
+	 *
+	 * @param name
+	 *            the name of the layer, may be null
+	 * @param order
+	 *            the position of the layer among the other layers
+	 * @return the new Layer
+	 * @throws IllegalArgumentException
+	 *             if there already is a layer with the given order or name
+	 */
+	public Layer addLayer(String name, int order) {
+		if (layers.containsKey(order)) {
+			throw new IllegalArgumentException("Layer " + order
+					+ " already exists");
+		}
+		if (name != null && getLayer(name) != null) {
+			throw new IllegalArgumentException("Layer " + name
+					+ " already exists");
+		}
+		Layer layer = new Layer(name, order);
+		Map.Entry<Integer, Layer> above = layers.higherEntry(order);
+		insertChild(layer, above == null ? childrens.size() : childIndex
+				.indexOf(above.getValue()));
+		layers.put(order, layer);
+		return layer;
+	}
+
+	/**
+	 * Layers are only placed by {@link #addLayer(String, int)}, so that
+	 * their order matches the order of the layer map.
+	 */
+	private static void checkNotLayer(VectorObject vo) {
+		if (vo instanceof Layer) {
+			throw new IllegalArgumentException(
+					"Layers can only be placed by addLayer");
+		}
+	}
+
+	/**
+	 * Returns the Layer with the given order, creating an unnamed one if it
+	 * does not exist yet.
+	 *
+	 * @param order
+	 *            the position of the layer among the other layers
+	 * @return the Layer
+	 */
+	public Layer getLayer(int order) {
+		Layer layer = layers.get(order);
+		return layer != null ? layer : addLayer(null, order);
+	}
+
+	/**
+	 * Returns the Layer with the given name.
+	 *
+	 * @param name
+	 *            the name of the layer
+	 * @return the Layer or null if there is no layer with the given name
+	 */
+	public Layer getLayer(String name) {
+		for (Layer layer : layers.values()) {
+			if (name.equals(layer.getName())) {
+				return layer;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the layers of this DrawingArea from the bottom to the top.
+	 *
+	 * @return an unmodifiable list of layers
+	 */
+	public List<Layer> getLayers() {
+		return Collections.unmodifiableList(new ArrayList<Layer>(layers
+				.values()));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -200,19 +947,38 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 * .gwtgraphics.client.VectorObject, int)
 	 */
 	public VectorObject insert(VectorObject vo, int beforeIndex) {
+		checkNotLayer(vo);
 		if (beforeIndex < 0 || beforeIndex > getVectorObjectCount()) {
 			throw new IndexOutOfBoundsException();
 		}
+		insertChild(vo, beforeIndex);
+		return vo;
+	}
 
-		if (childrens.contains(vo)) {
-			childrens.remove(vo);
+	private void insertChild(VectorObject vo, int beforeIndex) {
+		boolean move = vo.getParent() == this;
+		if (move) {
+			int index = childIndex.indexOf(vo);
+			childrens.remove(index);
+			childIndex.removed(index);
+			if (isDomRendered()) {
+				root.removeChild(vo.getElement());
+			}
+			beforeIndex = Math.min(beforeIndex, childrens.size());
 		}
 
 		childrens.add(beforeIndex, vo);
-		vo.setParent(this);
-		getImpl().insert(root, vo.getElement(), beforeIndex, vo.isAttached());
-
-		return vo;
+		childIndex.inserted(vo, beforeIndex);
+		if (!move) {
+			vo.setParent(this);
+		}
+		if (isDomRendered()) {
+			int next = beforeIndex + 1;
+			getImpl().insertBefore(root, vo.getElement(),
+					next < childrens.size() ? childrens.get(next).getElement() : null,
+					vo.isAttached());
+		}
+		scheduleRepaint();
 	}
 
 	/*
@@ -226,7 +992,20 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 		if (vo.getParent() != this) {
 			return null;
 		}
-		getImpl().bringToFront(root, vo.getElement());
+		checkNotLayer(vo);
+		int index = childIndex.indexOf(vo);
+		if (index == childrens.size() - 1) {
+			// already in front, leave the DOM alone
+			return vo;
+		}
+		childrens.remove(index);
+		childIndex.removed(index);
+		childrens.add(vo);
+		childIndex.appended(vo);
+		if (isDomRendered()) {
+			getImpl().bringToFront(root, vo.getElement());
+		}
+		scheduleRepaint();
 		return vo;
 	}
 
@@ -242,8 +1021,16 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 			return null;
 		}
 		vo.setParent(null);
-		root.removeChild(vo.getElement());
-		childrens.remove(vo);
+		if (isDomRendered()) {
+			root.removeChild(vo.getElement());
+		}
+		if (vo instanceof Layer) {
+			layers.remove(((Layer) vo).getOrder());
+		}
+		int index = childIndex.indexOf(vo);
+		childrens.remove(index);
+		childIndex.removed(index);
+		scheduleRepaint();
 		return vo;
 	}
 
@@ -253,11 +1040,19 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 * @see org.vaadin.gwtgraphics.client.VectorObjectContainer#clear()
 	 */
 	public void clear() {
-		List<VectorObject> childrensCopy = new ArrayList<VectorObject>();
-		childrensCopy.addAll(childrens);
-		for (VectorObject vo : childrensCopy) {
-			remove(vo);
+		if (isDomRendered()) {
+			getImpl().clear(root);
+		}
+		// cheaper to rebuild on demand than to remove each object from it
+		spatialIndex = null;
+		boundsUpdates.clear();
+		layers.clear();
+		for (VectorObject vo : childrens) {
+			vo.setParent(null);
 		}
+		childrens.clear();
+		childIndex.changed(0);
+		scheduleRepaint();
 	}
 
 	/*
@@ -287,6 +1082,12 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 * @return the width of the DrawingArea in pixels.
 	 */
 	public int getWidth() {
+		if (isHeadless()) {
+			return headlessWidth;
+		}
+		if (renderMode == RenderMode.CANVAS) {
+			return ((CanvasElement) root).getWidth();
+		}
 		return getImpl().getWidth(root);
 	}
 
@@ -297,7 +1098,25 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 *            the new width in pixels
 	 */
 	public void setWidth(int width) {
-		getImpl().setWidth(root, width);
+		if (isHeadless()) {
+			headlessWidth = width;
+		} else if (renderMode == RenderMode.CANVAS) {
+			((CanvasElement) root).setWidth(width);
+			getElement().getStyle().setPropertyPx("width", width);
+			scheduleRepaint();
+		} else {
+			getImpl().setWidth(root, width);
+		}
+		viewChanged();
+	}
+
+	/**
+	 * Notifies the objects that the visible area has changed.
+	 */
+	protected void viewChanged() {
+		for (VectorObject vo : childrens) {
+			vo.viewChanged();
+		}
 	}
 
 	/**
@@ -306,6 +1125,12 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 * @return the height of the DrawingArea in pixels.
 	 */
 	public int getHeight() {
+		if (isHeadless()) {
+			return headlessHeight;
+		}
+		if (renderMode == RenderMode.CANVAS) {
+			return ((CanvasElement) root).getHeight();
+		}
 		return getImpl().getHeight(root);
 	}
 
@@ -316,7 +1141,16 @@ implements VectorObjectContainer, HasClickHandlers, HasAllMouseHandlers, HasDoub
 	 *            the new height
 	 */
 	public void setHeight(int height) {
-		getImpl().setHeight(root, height);
+		if (isHeadless()) {
+			headlessHeight = height;
+		} else if (renderMode == RenderMode.CANVAS) {
+			((CanvasElement) root).setHeight(height);
+			getElement().getStyle().setPropertyPx("height", height);
+			scheduleRepaint();
+		} else {
+			getImpl().setHeight(root, height);
+		}
+		viewChanged();
 	}
 
 	/*
@@ -16,8 +16,11 @@
 package org.vaadin.addon.gwtgraphics.client;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import com.google.gwt.dom.client.Element;
+
 /**
  * Group is a container, which can contain one or more VectorObjects.
  *
@@ -28,12 +31,44 @@ public class Group extends VectorObject implements VectorObjectContainer {
 
 	protected List<VectorObject> children = new ArrayList<VectorObject>();
 
+	final ChildIndex childIndex = new ChildIndex(children);
+
 	/**
 	 * Creates an empty Group.
 	 */
 	public Group() {
 	}
 
+	/**
+	 * Returns the union of the bounds of the children. The result is cached
+	 * by {@link #getBounds()} until one of the children changes.
+	 */
+	@Override
+	protected Bounds getLocalBounds() {
+		Bounds bounds = null;
+		for (VectorObject vo : children) {
+			Bounds b = vo.getBounds();
+			if (b != null) {
+				bounds = b.union(bounds);
+			}
+		}
+		return bounds;
+	}
+
+	@Override
+	protected Bounds computeBounds() {
+		// the stroke is already part of the children's bounds
+		Bounds local = getLocalBounds();
+		return local == null ? null : local.transform(getTransform());
+	}
+
+	@Override
+	protected void viewChanged() {
+		for (VectorObject vo : children) {
+			vo.viewChanged();
+		}
+	}
+
 	@Override
 	protected Class<? extends VectorObject> getType() {
 		return Group.class;
@@ -47,11 +82,70 @@ public class Group extends VectorObject implements VectorObjectContainer {
 	 */
 	public VectorObject add(VectorObject vo) {
 		children.add(vo);
-		getImpl().add(getElement(), vo.getElement(), vo.isAttached());
+		childIndex.appended(vo);
+		if (!isHeadless()) {
+			getImpl().add(getElement(), vo.getElement(), vo.isAttached());
+		}
 		vo.setParent(this);
+		scheduleCanvasRepaint();
 		return vo;
 	}
 
+	/**
+	 * Adds all given VectorObjects to this Group. Unlike calling
+	 * {@link #add(VectorObject)} for each object, the pending redraws of the
+	 * objects are done while they are still detached and their elements are
+	 * inserted with a single DOM operation.
+	 *
+	 * @param objects
+	 *            the VectorObjects to add, none of which may have a parent
+	 * @throws IllegalStateException
+	 *             if one of the objects already has a parent, in which case
+	 *             none of them is added
+	 */
+	public void addAll(Collection<? extends VectorObject> objects) {
+		checkNoParents(objects);
+		if (!isHeadless()) {
+			getImpl().addAll(getElement(), detachedElements(objects));
+		}
+		for (VectorObject vo : objects) {
+			children.add(vo);
+			childIndex.appended(vo);
+			vo.setParent(this);
+		}
+		scheduleCanvasRepaint();
+	}
+
+	static void checkNoParents(Collection<? extends VectorObject> objects) {
+		for (VectorObject vo : objects) {
+			if (vo.getParent() != null) {
+				throw new IllegalStateException(
+						"Cannot add an object which already has a parent");
+			}
+		}
+	}
+
+	/**
+	 * Redraws the given detached objects and returns their elements.
+	 */
+	static List<Element> detachedElements(
+			Collection<? extends VectorObject> objects) {
+		List<Element> elements = new ArrayList<Element>(objects.size());
+		for (VectorObject vo : objects) {
+			vo.flushRedraw();
+			elements.add(vo.getElement());
+		}
+		return elements;
+	}
+
+	@Override
+	void flushRedraw() {
+		super.flushRedraw();
+		for (VectorObject vo : children) {
+			vo.flushRedraw();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -64,15 +158,29 @@ public class Group extends VectorObject implements VectorObjectContainer {
 			throw new IndexOutOfBoundsException();
 		}
 
-		if (children.contains(vo)) {
-			children.remove(vo);
+		boolean move = vo.getParent() == this;
+		if (move) {
+			int index = childIndex.indexOf(vo);
+			children.remove(index);
+			childIndex.removed(index);
+			if (!isHeadless()) {
+				getElement().removeChild(vo.getElement());
+			}
+			beforeIndex = Math.min(beforeIndex, children.size());
 		}
 
 		children.add(beforeIndex, vo);
-		vo.setParent(this);
-		getImpl().insert(getElement(), vo.getElement(), beforeIndex,
-				vo.isAttached());
-
+		childIndex.inserted(vo, beforeIndex);
+		if (!move) {
+			vo.setParent(this);
+		}
+		if (!isHeadless()) {
+			int next = beforeIndex + 1;
+			getImpl().insertBefore(getElement(), vo.getElement(),
+					next < children.size() ? children.get(next).getElement() : null,
+					vo.isAttached());
+		}
+		scheduleCanvasRepaint();
 		return vo;
 	}
 
@@ -88,8 +196,13 @@ public class Group extends VectorObject implements VectorObjectContainer {
 			return null;
 		}
 		vo.setParent(null);
-		getElement().removeChild(vo.getElement());
-		children.remove(vo);
+		if (!isHeadless()) {
+			getElement().removeChild(vo.getElement());
+		}
+		int index = childIndex.indexOf(vo);
+		children.remove(index);
+		childIndex.removed(index);
+		scheduleCanvasRepaint();
 		return vo;
 	}
 
@@ -104,7 +217,19 @@ public class Group extends VectorObject implements VectorObjectContainer {
 		if (vo.getParent() != this) {
 			return null;
 		}
-		getImpl().bringToFront(getElement(), vo.getElement());
+		int index = childIndex.indexOf(vo);
+		if (index == children.size() - 1) {
+			// already in front, leave the DOM alone
+			return vo;
+		}
+		children.remove(index);
+		childIndex.removed(index);
+		children.add(vo);
+		childIndex.appended(vo);
+		if (!isHeadless()) {
+			getImpl().bringToFront(getElement(), vo.getElement());
+		}
+		scheduleCanvasRepaint();
 		return vo;
 	}
 
@@ -114,11 +239,15 @@ public class Group extends VectorObject implements VectorObjectContainer {
 	 * @see org.vaadin.gwtgraphics.client.VectorObjectContainer#clear()
 	 */
 	public void clear() {
-		List<VectorObject> childrensCopy = new ArrayList<VectorObject>();
-		childrensCopy.addAll(children);
-		for (VectorObject vo : childrensCopy) {
-			remove(vo);
+		if (!isHeadless()) {
+			getImpl().clear(getElement());
+		}
+		for (VectorObject vo : children) {
+			vo.setParent(null);
 		}
+		children.clear();
+		childIndex.changed(0);
+		scheduleCanvasRepaint();
 	}
 
 	/*
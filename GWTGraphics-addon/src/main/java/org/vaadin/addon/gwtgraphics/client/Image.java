@@ -16,6 +16,9 @@
 package org.vaadin.addon.gwtgraphics.client;
 
 import org.vaadin.addon.gwtgraphics.client.animation.Animatable;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PropertyStore;
+
+import com.google.gwt.dom.client.Element;
 
 /**
  * Image represents a raster image that can be embedded into DrawingArea.
@@ -25,6 +28,8 @@ import org.vaadin.addon.gwtgraphics.client.animation.Animatable;
  */
 public class Image extends VectorObject implements Animatable {
 
+	private static final int HREF = PropertyStore.key("xlink:href");
+
 	/**
 	 * Create a new Image with the given properties.
 	 *
@@ -47,11 +52,28 @@ public class Image extends VectorObject implements Animatable {
 		setHref(href);
 	}
 
+	/**
+	 * Creates an Image rendered by the given element without setting any of
+	 * its properties, for a {@link Stamp.Factory}. A new element is created
+	 * if it is null.
+	 *
+	 * @param element
+	 *            the element of the image, or null
+	 */
+	public Image(Element element) {
+		super(element);
+	}
+
 	@Override
 	protected Class<? extends VectorObject> getType() {
 		return Image.class;
 	}
 
+	@Override
+	protected boolean isGeometryProperty(int key) {
+		return key == HREF;
+	}
+
 	/**
 	 * Returns the URL of the image currently shown.
 	 *
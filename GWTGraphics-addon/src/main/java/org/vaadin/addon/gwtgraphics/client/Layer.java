@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client;
+
+import java.util.Collection;
+
+/**
+ * Layer is a Group of a DrawingArea whose children are stacked by their
+ * z-index. Children with a higher z-index are drawn above children with a
+ * lower one and children with an equal z-index keep the order in which they
+ * were placed. Changing the z-index of an object moves only its own element
+ * in the DOM, and only if its position actually changes.
+ * <p>
+ * Layers are created with {@link DrawingArea#addLayer(String, int)} or
+ * {@link DrawingArea#getLayer(int)}, which keep them in the order given by
+ * {@link #getOrder()}.
+ */
+public class Layer extends Group {
+
+	private final String name;
+
+	private final int order;
+
+	Layer(String name, int order) {
+		this.name = name;
+		this.order = order;
+	}
+
+	/**
+	 * Returns the name of the layer.
+	 *
+	 * @return the name or null if the layer has no name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the position of the layer among the other layers of the
+	 * DrawingArea. Layers with a higher order are drawn above.
+	 *
+	 * @return the order of the layer
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Adds the given VectorObject on top of this Layer with the given
+	 * z-index. If the object already is in this Layer, its z-index is
+	 * changed.
+	 *
+	 * @param vo
+	 *            the VectorObject to add
+	 * @param zIndex
+	 *            the z-index of the object
+	 * @return the added VectorObject
+	 */
+	public VectorObject add(VectorObject vo, int zIndex) {
+		if (vo.getParent() == this) {
+			setZIndex(vo, zIndex);
+			return vo;
+		}
+		super.insert(vo, upperBound(zIndex));
+		vo.zIndex = zIndex;
+		return vo;
+	}
+
+	/**
+	 * Adds the given VectorObject on top of this Layer. It gets the z-index
+	 * of the topmost object unless its own z-index is higher.
+	 */
+	@Override
+	public VectorObject add(VectorObject vo) {
+		super.add(vo);
+		fitZIndex(vo);
+		return vo;
+	}
+
+	@Override
+	public void addAll(Collection<? extends VectorObject> objects) {
+		int z = children.isEmpty() ? 0 : top().zIndex;
+		super.addAll(objects);
+		for (VectorObject vo : objects) {
+			vo.zIndex = z;
+		}
+	}
+
+	/**
+	 * Inserts the given VectorObject at the given position. The z-index of
+	 * the object is adjusted to the range allowed by its new neighbours.
+	 */
+	@Override
+	public VectorObject insert(VectorObject vo, int beforeIndex) {
+		super.insert(vo, beforeIndex);
+		fitZIndex(vo);
+		return vo;
+	}
+
+	/**
+	 * Brings the given VectorObject to the front of this Layer, raising its
+	 * z-index to the one of the topmost object if necessary.
+	 */
+	@Override
+	public VectorObject bringToFront(VectorObject vo) {
+		if (super.bringToFront(vo) == null) {
+			return null;
+		}
+		fitZIndex(vo);
+		return vo;
+	}
+
+	/**
+	 * Returns the z-index of the given VectorObject.
+	 *
+	 * @param vo
+	 *            a VectorObject of this Layer
+	 * @return the z-index of the object
+	 * @throws IllegalArgumentException
+	 *             if the object is not in this Layer
+	 */
+	public int getZIndex(VectorObject vo) {
+		checkChild(vo);
+		return vo.zIndex;
+	}
+
+	/**
+	 * Changes the z-index of the given VectorObject. The object is placed
+	 * above the other objects with the same z-index.
+	 *
+	 * @param vo
+	 *            a VectorObject of this Layer
+	 * @param zIndex
+	 *            the new z-index
+	 * @throws IllegalArgumentException
+	 *             if the object is not in this Layer
+	 */
+	public void setZIndex(VectorObject vo, int zIndex) {
+		checkChild(vo);
+		int index = childIndex.indexOf(vo);
+		int position = upperBound(zIndex);
+		if (index < position) {
+			// the object itself is removed before it is inserted again
+			position--;
+		}
+		if (position != index) {
+			super.insert(vo, position);
+		}
+		vo.zIndex = zIndex;
+	}
+
+	private void checkChild(VectorObject vo) {
+		if (vo.getParent() != this) {
+			throw new IllegalArgumentException(
+					"The object is not in this layer");
+		}
+	}
+
+	private VectorObject top() {
+		return children.get(children.size() - 1);
+	}
+
+	/**
+	 * Returns the position after the last child with a z-index less than or
+	 * equal to the given one.
+	 */
+	private int upperBound(int zIndex) {
+		int low = 0;
+		int high = children.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (children.get(mid).zIndex <= zIndex) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Clamps the z-index of the given child between the z-indexes of its
+	 * neighbours so that the children stay sorted.
+	 */
+	private void fitZIndex(VectorObject vo) {
+		int index = childIndex.indexOf(vo);
+		int z = vo.zIndex;
+		if (index > 0) {
+			z = Math.max(z, children.get(index - 1).zIndex);
+		}
+		if (index < children.size() - 1) {
+			z = Math.min(z, children.get(index + 1).zIndex);
+		}
+		vo.zIndex = z;
+	}
+}
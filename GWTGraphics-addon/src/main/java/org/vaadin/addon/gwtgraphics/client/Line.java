@@ -16,6 +16,10 @@
 package org.vaadin.addon.gwtgraphics.client;
 
 import org.vaadin.addon.gwtgraphics.client.animation.Animatable;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PropertyStore;
+
+import com.google.gwt.dom.client.Element;
 
 /**
  * Line represents a straight line from one point to another. Line can be
@@ -26,6 +30,11 @@ import org.vaadin.addon.gwtgraphics.client.animation.Animatable;
  */
 public class Line extends VectorObject implements Animatable {
 
+	private static final int X1 = PropertyStore.key("x1");
+	private static final int Y1 = PropertyStore.key("y1");
+	private static final int X2 = PropertyStore.key("x2");
+	private static final int Y2 = PropertyStore.key("y2");
+
 	protected double x0, y0, x1, y1;
 
 	/**
@@ -46,12 +55,24 @@ public class Line extends VectorObject implements Animatable {
 		setEndPosition(x2,y2);
 	}
 
+	/**
+	 * Creates a Line rendered by the given element without setting any of
+	 * its properties, for a {@link Stamp.Factory}. A new element is created
+	 * if it is null.
+	 *
+	 * @param element
+	 *            the element of the line, or null
+	 */
+	public Line(Element element) {
+		super(element);
+	}
+
 	public void setStartPosition(double x, double y) {
 		x0 = x;
 		y0 = y;
-		setProperty("x1", x);
-		setProperty("y1", y);
-		redraw();
+		setProperty(X1, x);
+		setProperty(Y1, y);
+		scheduleRedraw();
 	}
 
 	public double getX0() {
@@ -65,9 +86,9 @@ public class Line extends VectorObject implements Animatable {
 	public void setEndPosition(double x, double y) {
 		x1 = x;
 		y1 = y;
-		setProperty("x2", x);
-		setProperty("y2", y);
-		redraw();
+		setProperty(X2, x);
+		setProperty(Y2, y);
+		scheduleRedraw();
 	}
 
 	public double getX1() {
@@ -78,11 +99,37 @@ public class Line extends VectorObject implements Animatable {
 		return y1;
 	}
 
+	@Override
+	protected boolean containsLocal(double x, double y) {
+		double t = getStrokeHitTolerance();
+		return t > 0 && PathGeometry.distanceSquared(x, y, x0, y0, x1, y1) <= t * t;
+	}
+
+	@Override
+	protected Bounds getLocalBounds() {
+		return new Bounds(x0, y0, x1, y1);
+	}
+
 	@Override
 	protected Class<? extends VectorObject> getType() {
 		return Line.class;
 	}
 
+	@Override
+	protected void copyFrom(VectorObject template, boolean clonedElement) {
+		Line line = (Line) template;
+		x0 = line.x0;
+		y0 = line.y0;
+		x1 = line.x1;
+		y1 = line.y1;
+		super.copyFrom(template, clonedElement);
+	}
+
+	@Override
+	protected boolean isGeometryProperty(int key) {
+		return key == X1 || key == Y1 || key == X2 || key == Y2;
+	}
+
 	@Override
 	public String getSVGElementName() {
 		return "line";
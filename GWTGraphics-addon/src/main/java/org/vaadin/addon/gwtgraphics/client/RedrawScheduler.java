@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
+
+/**
+ * Collects VectorObjects that need to be redrawn and redraws each of them at
+ * most once per animation frame, no matter how many times a redraw was
+ * requested in between.
+ *
+ * @see VectorObject#scheduleRedraw()
+ */
+public class RedrawScheduler {
+
+	private static RedrawScheduler instance;
+
+	protected List<VectorObject> queue = new ArrayList<VectorObject>();
+
+	protected AnimationHandle frame;
+
+	protected final AnimationCallback callback = new AnimationCallback() {
+		@Override
+		public void execute(double timestamp) {
+			frame = null;
+			flush();
+		}
+	};
+
+	/**
+	 * Returns the shared scheduler instance.
+	 *
+	 * @return the scheduler
+	 */
+	public static RedrawScheduler get() {
+		if (instance == null) {
+			instance = new RedrawScheduler();
+		}
+		return instance;
+	}
+
+	protected RedrawScheduler() {
+	}
+
+	/**
+	 * Queues the given VectorObject to be redrawn on the next animation frame.
+	 * Does nothing if the object is already queued.
+	 *
+	 * @param vo
+	 *            VectorObject to be redrawn
+	 */
+	public void schedule(VectorObject vo) {
+		if (vo.redrawPending) {
+			return;
+		}
+		vo.redrawPending = true;
+		queue.add(vo);
+		if (frame == null) {
+			frame = AnimationScheduler.get().requestAnimationFrame(callback);
+		}
+	}
+
+	/**
+	 * Redraws all queued VectorObjects immediately. Objects which have been
+	 * redrawn directly after they were queued are skipped.
+	 */
+	public void flush() {
+		if (frame != null) {
+			frame.cancel();
+			frame = null;
+		}
+		while (!queue.isEmpty()) {
+			List<VectorObject> batch = queue;
+			queue = new ArrayList<VectorObject>();
+			for (VectorObject vo : batch) {
+				if (vo.redrawPending) {
+					vo.redraw();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of VectorObjects waiting for the next frame.
+	 *
+	 * @return the number of queued VectorObjects
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+}
@@ -15,6 +15,8 @@
  */
 package org.vaadin.addon.gwtgraphics.client;
 
+import com.google.gwt.dom.client.Element;
+
 /**
  * Shape is an abstract upper-class for VectorObjects that support filling,
  * stroking and positioning. Currently the actual functionality has been moved
@@ -26,5 +28,17 @@ package org.vaadin.addon.gwtgraphics.client;
  */
 public abstract class Shape extends VectorObject {
 
+	public Shape() {
+	}
 
+	/**
+	 * Creates a Shape rendered by the given element, or by a new element if
+	 * it is null.
+	 *
+	 * @param element
+	 *            the element of the shape, or null
+	 */
+	protected Shape(Element element) {
+		super(element);
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client;
+
+import com.google.gwt.dom.client.Element;
+
+/**
+ * Stamp creates copies of a styled template object. The element of each
+ * copy is a deep clone of the rendered element of the template, so none of
+ * the attributes shared with the template are written again, and the
+ * copies share the Stroke and Fill of the template. A change to those does
+ * not schedule a redraw of the copies; each copy picks it up on its next
+ * {@link VectorObject#redraw()}. <code>setStroke</code> and
+ * <code>setFill</code> give a single copy its own.
+ * <p>
+ * The objects are constructed by a {@link Factory}, which must create a new
+ * object of the same type as the template, rendered by the element it is
+ * given, on each call. The built-in shapes have a constructor for this, for
+ * example
+ * {@link org.vaadin.addon.gwtgraphics.client.shape.Circle#Circle(Element)}.
+ * The template is rendered before it is cloned, so changes to it affect the
+ * copies created afterwards. A Stamp can itself be used as the factory of a
+ * {@link VectorObjectPool}, which then hands out reused objects styled like
+ * the template as well.
+ *
+ * @param <T>
+ *            the type of the created objects
+ */
+public class Stamp<T extends VectorObject> implements
+		VectorObjectPool.Factory<T> {
+
+	/**
+	 * Creates the objects of a Stamp.
+	 *
+	 * @param <T>
+	 *            the type of the created objects
+	 */
+	public interface Factory<T extends VectorObject> {
+
+		/**
+		 * Returns a new object rendered by the given element.
+		 *
+		 * @param element
+		 *            a clone of the element of the template, or null if the
+		 *            template has not been rendered
+		 * @return the new object
+		 */
+		T create(Element element);
+	}
+
+	private final T template;
+
+	private final Factory<? extends T> factory;
+
+	/**
+	 * Creates a Stamp for the given template.
+	 *
+	 * @param template
+	 *            the object to copy
+	 * @param factory
+	 *            the factory constructing objects of the template's type
+	 * @throws IllegalArgumentException
+	 *             if the template is a Group
+	 */
+	public Stamp(T template, Factory<? extends T> factory) {
+		if (template instanceof Group) {
+			throw new IllegalArgumentException("Groups cannot be stamped");
+		}
+		this.template = template;
+		this.factory = factory;
+	}
+
+	public T getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Creates a new copy of the template.
+	 *
+	 * @return the new object
+	 * @throws IllegalStateException
+	 *             if the factory did not create an object of the type of the
+	 *             template rendered by the clone
+	 */
+	public T create() {
+		Element clone = null;
+		if (template.isElementRendered()) {
+			template.flushRedraw();
+			clone = template.getElement().cloneNode(true).cast();
+		}
+		T vo = factory.create(clone);
+		if (vo.getType() != template.getType()
+				|| (clone != null && vo.getElement() != clone)) {
+			throw new IllegalStateException(
+					"The factory must create a new object of the type of the template");
+		}
+		vo.copyFrom(template, clone != null);
+		return vo;
+	}
+
+	/**
+	 * Gives an existing object the styling, properties and transform of the
+	 * template. Unlike {@link #create()} this writes every attribute to the
+	 * element again.
+	 *
+	 * @param vo
+	 *            an object of the type of the template
+	 */
+	public void apply(T vo) {
+		vo.copyFrom(template, false);
+	}
+
+	/**
+	 * Resets the given object and applies the template to it.
+	 *
+	 * @see #apply(VectorObject)
+	 */
+	public void recycle(T vo) {
+		vo.reset();
+		apply(vo);
+	}
+}
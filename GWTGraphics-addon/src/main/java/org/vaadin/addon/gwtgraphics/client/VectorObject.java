@@ -15,19 +15,18 @@
  */
 package org.vaadin.addon.gwtgraphics.client;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import org.vaadin.addon.gwtgraphics.client.animation.Animatable;
 import org.vaadin.addon.gwtgraphics.client.fill.Fill;
 import org.vaadin.addon.gwtgraphics.client.filter.Filter;
 import org.vaadin.addon.gwtgraphics.client.gradient.Gradient;
 import org.vaadin.addon.gwtgraphics.client.impl.SVGImpl;
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PropertyStore;
 import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
 import org.vaadin.addon.gwtgraphics.client.stroke.Stroke;
-import org.vaadin.addon.gwtgraphics.client.stroke.Stroke.LineCap;
-import org.vaadin.addon.gwtgraphics.client.stroke.Stroke.LineJoin;
 import org.vaadin.addon.gwtgraphics.client.transform.MatrixTransform;
 
 import com.google.gwt.core.client.GWT;
@@ -36,6 +35,7 @@ import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.dom.client.DoubleClickEvent;
 import com.google.gwt.event.dom.client.DoubleClickHandler;
+import com.google.gwt.event.dom.client.DomEvent;
 import com.google.gwt.event.dom.client.HasAllMouseHandlers;
 import com.google.gwt.event.dom.client.HasClickHandlers;
 import com.google.gwt.event.dom.client.HasDoubleClickHandlers;
@@ -51,7 +51,9 @@ import com.google.gwt.event.dom.client.MouseUpEvent;
 import com.google.gwt.event.dom.client.MouseUpHandler;
 import com.google.gwt.event.dom.client.MouseWheelEvent;
 import com.google.gwt.event.dom.client.MouseWheelHandler;
+import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.ui.Widget;
 
 /**
@@ -70,10 +72,66 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 
 	protected Widget parent;
 
-	protected Map<String, String> properties;
+	protected PropertyStore properties;
+
+	/**
+	 * Attribute values last written to the element by {@link #redraw()}. Used
+	 * to skip DOM writes for attributes whose value hasn't changed.
+	 */
+	protected PropertyStore renderedAttributes;
+
+	/**
+	 * Fill and Stroke instances and their versions that were last applied to
+	 * the element, together with the attributes written for them.
+	 */
+	protected Fill renderedFill;
+	protected int renderedFillVersion;
+	protected String[] renderedFillAttributes;
+	protected Stroke renderedStroke;
+	protected int renderedStrokeVersion;
+	protected String[] renderedStrokeAttributes;
+
+	/**
+	 * Matrix values last written to the element, null if not written yet.
+	 */
+	protected double[] renderedMatrix;
+
+	private static boolean nativeTransformUpdates = false;
+
+	/**
+	 * Name of the expando property pointing from an element to its
+	 * VectorObject while it is attached to a DrawingArea with event
+	 * delegation.
+	 */
+	static final String OBJECT_PROPERTY = "__gwtgraphicsObject";
+
+	/**
+	 * Event bits of the mouse handlers registered to this VectorObject, and
+	 * to it and its children.
+	 */
+	int delegatedEvents;
+	int subtreeEvents;
+
+	/**
+	 * Minimum distance in pixels within which a point hits a stroke, so that
+	 * thin lines remain clickable.
+	 */
+	protected static final double MIN_STROKE_HIT_TOLERANCE = 1;
+
+	private static final int TRANSFORM = PropertyStore.key("transform");
+
+	private static int attributeWriteCount;
+	private static int skippedAttributeWriteCount;
 
 	protected Stroke stroke;
 	protected Fill fill;
+
+	/**
+	 * True while the stroke and the fill are the instances created by the
+	 * constructor, which {@link #reset()} may modify.
+	 */
+	private boolean ownStroke = true;
+	private boolean ownFill = true;
 	protected FillType fillType;
 	protected Gradient fillGradient;
 	protected MatrixTransform transform;
@@ -85,9 +143,82 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	protected double rotation;
 	protected boolean transformDirty;
 
+	/**
+	 * Cached inverse of the transform, null when outdated.
+	 */
+	protected double[] inverseTransform;
+
+	/**
+	 * True when this object is queued in the {@link RedrawScheduler}.
+	 */
+	boolean redrawPending;
+
+	/**
+	 * False while the bounds in the DrawingArea's spatial index are up to
+	 * date.
+	 */
+	boolean boundsDirty = true;
+
+	/**
+	 * Position of this object in the children of its parent, maintained by
+	 * {@link ChildIndex}.
+	 */
+	int indexInParent;
+
+	/**
+	 * Stacking order of this object inside a {@link Layer}.
+	 */
+	int zIndex;
+
+	/**
+	 * True while this object is waiting for reuse in a
+	 * {@link VectorObjectPool}.
+	 */
+	boolean pooled;
+
+	/**
+	 * Result of {@link #getBounds()}, valid until the geometry changes.
+	 */
+	private Bounds bounds;
+	private boolean boundsCached;
+
+	/**
+	 * The Stroke and its version the cached bounds were computed with.
+	 */
+	private Stroke boundsStroke;
+	private int boundsStrokeVersion;
+
+	/**
+	 * Mouse handlers registered to this object, removed by
+	 * {@link #removeHandlers()}. Null until the first one is added.
+	 */
+	private List<HandlerRegistration> handlerRegistrations;
+
+	/**
+	 * True if {@link #setStyleName(String)} has been called since the
+	 * element was created or reset.
+	 */
+	private boolean styleNameSet;
+
 	public VectorObject() {
-		setElement(impl.createElement(getType()));
-		properties = new LinkedHashMap<String, String>();
+		this(null);
+	}
+
+	/**
+	 * Creates a VectorObject rendered by the given element, such as a clone
+	 * made by a {@link Stamp}, or by a new element if it is null.
+	 *
+	 * @param element
+	 *            the element of the object, or null
+	 */
+	protected VectorObject(Element element) {
+		if (element != null) {
+			setElement(element);
+		} else if (!isHeadless()) {
+			setElement(impl.createElement(getType()));
+		}
+		properties = new PropertyStore();
+		renderedAttributes = new PropertyStore(16);
 
 		stroke = new Stroke("black");
 		fill = new Fill("white");
@@ -103,11 +234,220 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 		transformDirty = true;
 	}
 
-        public boolean contains(int clientX, int clientY) {
-	    return  (clientX>=posX && clientX<=(posX+width) && clientY>=posY && clientY<=(posY+height));
-        }
+	/**
+	 * Returns true if the given point, in the coordinate system of the
+	 * parent, hits this object.
+	 *
+	 * @see #contains(double, double)
+	 */
+	public boolean contains(int clientX, int clientY) {
+		return contains((double) clientX, (double) clientY);
+	}
 
-	protected MatrixTransform getTransform() {
+	/**
+	 * Returns true if the given point, in the coordinate system of the
+	 * parent, hits the painted area of this object: its filled interior or
+	 * its stroke. The point is mapped through the inverse of
+	 * {@link #getTransform()}, so rotation and scale are taken into account.
+	 *
+	 * @param x
+	 *            x-coordinate in the parent's coordinate system
+	 * @param y
+	 *            y-coordinate in the parent's coordinate system
+	 * @return true if the point hits this object
+	 */
+	public boolean contains(double x, double y) {
+		double[] inv = getInverseTransform();
+		if (inv == null) {
+			return false;
+		}
+		return containsLocal(inv[0] * x + inv[2] * y + inv[4], inv[1] * x
+				+ inv[3] * y + inv[5]);
+	}
+
+	/**
+	 * Hit test in the local coordinate system of this object, i.e. before
+	 * the transform is applied. The default implementation tests the local
+	 * bounds.
+	 */
+	protected boolean containsLocal(double x, double y) {
+		Bounds b = getLocalBounds();
+		return b != null && b.expand(getStrokeHitTolerance()).contains(x, y);
+	}
+
+	/**
+	 * Returns true if the interior of this object is painted.
+	 */
+	protected boolean isFilled() {
+		if (fillType == FillType.GRADIENT) {
+			return fillGradient != null;
+		}
+		return fill != null && isPaint(fill.getStyle());
+	}
+
+	/**
+	 * Returns the distance from the outline within which a point hits the
+	 * stroke, or 0 if the object isn't stroked.
+	 */
+	protected double getStrokeHitTolerance() {
+		if (stroke == null || !isPaint(stroke.getColor())) {
+			return 0;
+		}
+		return Math.max(stroke.getLineWidth() / 2, MIN_STROKE_HIT_TOLERANCE);
+	}
+
+	private static boolean isPaint(String color) {
+		return color != null && !color.isEmpty() && !"none".equals(color);
+	}
+
+	/**
+	 * Returns the inverse of {@link #getTransform()} as
+	 * <code>{a, b, c, d, tx, ty}</code>. The result is cached until the
+	 * transform changes.
+	 *
+	 * @return the inverse matrix or null if the transform is not invertible
+	 */
+	protected double[] getInverseTransform() {
+		MatrixTransform t = getTransform();
+		if (inverseTransform == null) {
+			double a = t.getA(), b = t.getB(), c = t.getC(), d = t.getD();
+			double tx = t.getTX(), ty = t.getTY();
+			double det = a * d - b * c;
+			if (det == 0) {
+				return null;
+			}
+			inverseTransform = new double[] { d / det, -b / det, -c / det,
+					a / det, (c * ty - d * tx) / det, (b * tx - a * ty) / det };
+		}
+		return inverseTransform;
+	}
+
+	/**
+	 * Maps the given rectangle from the coordinates of the DrawingArea to the
+	 * local coordinates of this object. With rotation, the result is the
+	 * axis-aligned bounds of the mapped rectangle.
+	 *
+	 * @param bounds
+	 *            the rectangle in the coordinates of the DrawingArea
+	 * @return the local rectangle or null if a transform is not invertible
+	 */
+	protected Bounds areaToLocal(Bounds bounds) {
+		List<VectorObject> chain = new ArrayList<VectorObject>();
+		for (Widget w = this; w instanceof VectorObject; w = w.getParent()) {
+			chain.add((VectorObject) w);
+		}
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			double[] inv = chain.get(i).getInverseTransform();
+			if (inv == null) {
+				return null;
+			}
+			bounds = bounds.transform(inv[0], inv[1], inv[2], inv[3], inv[4],
+					inv[5]);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Returns the bounds of this object in the coordinate system of its
+	 * parent, including the stroke. The bounds are computed from the model
+	 * without browser layout and cached until the geometry changes. They may
+	 * be larger than the painted area but never smaller, and they cover every
+	 * point accepted by {@link #contains(double, double)}, so that the
+	 * spatial index of the DrawingArea finds thin strokes too.
+	 *
+	 * @return the bounds or null if the object has no extent
+	 */
+	public Bounds getBounds() {
+		checkStrokeBounds();
+		if (!boundsCached) {
+			bounds = computeBounds();
+			boundsCached = true;
+			boundsStroke = stroke;
+			boundsStrokeVersion = stroke == null ? 0 : stroke.getVersion();
+		}
+		return bounds;
+	}
+
+	/**
+	 * Invalidates the cached bounds if the Stroke has been modified since
+	 * they were computed, as the Stroke does not notify the objects using
+	 * it.
+	 */
+	private void checkStrokeBounds() {
+		if (boundsCached
+				&& (stroke != boundsStroke || stroke != null
+						&& stroke.getVersion() != boundsStrokeVersion)) {
+			geometryChanged();
+		}
+	}
+
+	/**
+	 * Computes the value returned by {@link #getBounds()}.
+	 */
+	protected Bounds computeBounds() {
+		Bounds local = getLocalBounds();
+		if (local == null) {
+			return null;
+		}
+		if (stroke != null) {
+			local = local.expand(Math.max(stroke.getLineWidth() / 2,
+					getStrokeHitTolerance()));
+		}
+		return local.transform(getTransform());
+	}
+
+	/**
+	 * Returns the bounds of the geometry of this object before its transform
+	 * is applied. The default implementation uses the width and height.
+	 *
+	 * @return the bounds or null if the object has no extent
+	 */
+	protected Bounds getLocalBounds() {
+		if (width < 0 || height < 0) {
+			return null;
+		}
+		return new Bounds(0, 0, width, height);
+	}
+
+	/**
+	 * Must be called whenever a change may affect {@link #getBounds()}, so
+	 * that the DrawingArea can update its spatial index.
+	 */
+	protected void geometryChanged() {
+		boundsCached = false;
+		bounds = null;
+		invalidateParentBounds();
+		if (!boundsDirty) {
+			boundsDirty = true;
+			DrawingArea area = getDrawingArea();
+			if (area != null) {
+				area.boundsChanged(this);
+			}
+		}
+	}
+
+	/**
+	 * Invalidates the aggregated bounds of the enclosing Groups and the
+	 * DrawingArea. Stops at the first one that is already invalid, since the
+	 * bounds of a container are never valid while a child's are not.
+	 */
+	private void invalidateParentBounds() {
+		Widget p = parent;
+		while (p instanceof VectorObject) {
+			VectorObject vo = (VectorObject) p;
+			if (!vo.boundsCached) {
+				return;
+			}
+			vo.boundsCached = false;
+			vo.bounds = null;
+			p = vo.parent;
+		}
+		if (p instanceof DrawingArea) {
+			((DrawingArea) p).contentBoundsChanged();
+		}
+	}
+
+	public MatrixTransform getTransform() {
 		if(transformDirty) {
 
 			double rot = Math.toRadians(rotation);
@@ -124,6 +464,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 			}else {
 				transform.set(a, b, c, d, tx, ty);
 			}
+			inverseTransform = null;
 			transformDirty = false;
 		}
 		return transform;
@@ -133,6 +474,59 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 		return impl;
 	}
 
+	/**
+	 * Returns the DrawingArea this object has been added to, directly or
+	 * through Groups.
+	 *
+	 * @return the DrawingArea or null if this object isn't part of one
+	 */
+	public DrawingArea getDrawingArea() {
+		Widget p = parent;
+		while (p instanceof VectorObject) {
+			p = ((VectorObject) p).parent;
+		}
+		return p instanceof DrawingArea ? (DrawingArea) p : null;
+	}
+
+	/**
+	 * Returns true if this object is drawn through its own element, false if
+	 * it is headless or painted by a DrawingArea in canvas mode.
+	 *
+	 * @return true if redraw() should update the element
+	 */
+	protected boolean isElementRendered() {
+		if (isHeadless()) {
+			return false;
+		}
+		DrawingArea area = getDrawingArea();
+		return area == null || area.getRenderMode() != DrawingArea.RenderMode.CANVAS;
+	}
+
+	/**
+	 * Requests a repaint of the canvas this object is painted on. Does
+	 * nothing if the object isn't part of a DrawingArea in canvas mode.
+	 */
+	protected void scheduleCanvasRepaint() {
+		DrawingArea area = getDrawingArea();
+		if (area != null) {
+			area.scheduleRepaint();
+		}
+	}
+
+	/**
+	 * Returns true if there is no rendering backend, in which case this
+	 * object has no element and only its model is maintained. This is the
+	 * case on a plain JVM where <code>GWT.create()</code> returns null, for
+	 * example after <code>GWTMockUtilities.disarm()</code>. Such objects can
+	 * be rendered with
+	 * {@link org.vaadin.addon.gwtgraphics.client.impl.SVGSerializer}.
+	 *
+	 * @return true if this object has no element
+	 */
+	protected boolean isHeadless() {
+		return getImpl() == null;
+	}
+
 	protected abstract Class<? extends VectorObject> getType();
 
 	/**
@@ -140,11 +534,13 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 *
 	 * @return a string like 'line' or 'rect'
 	 */
-	protected abstract String getSVGElementName();
+	public abstract String getSVGElementName();
 
 	public void setStroke(Stroke s) {
 		if(s != null) {
 			stroke = s;
+			ownStroke = false;
+			geometryChanged();
 		}
 	}
 
@@ -156,12 +552,14 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 		fillType = FillType.SOLID;
 		fill = f;
 		fillGradient = null;
+		ownFill = false;
 	}
 
 	public void setFill(Gradient g) {
 		fillType = FillType.GRADIENT;
 		fillGradient = g;
 		fill = null;
+		ownFill = false;
 	}
 
 	public FillType getFillType() {
@@ -187,76 +585,370 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	/**
 	 * Render the Vector object with the given properties
 	 * on the SVG canvas. This method should be called every time the SVG should be
-	 * updated.
+	 * updated. Only attributes whose value differs from the previously
+	 * rendered one are written to the DOM. In a canvas mode DrawingArea this
+	 * schedules a repaint of the canvas instead.
 	 *
 	 */
 	public void redraw() {
+		redrawPending = false;
+		if (!isElementRendered()) {
+			scheduleCanvasRepaint();
+			return;
+		}
 		Element e = getElement();
 		MatrixTransform transform = getTransform();
 
-		for (String property : properties.keySet()) {
-			String value = properties.get(property);
-			if ("xlink:href".equals(property)) {
-				SVGUtil.setAttributeNS("http://www.w3.org/1999/xlink", e, property, value);
-			} else {
-				e.setAttribute(property, value);
+		for (int i = 0; i < properties.size(); i++) {
+			if (properties.isDirtyAt(i)) {
+				writeAttribute(e, PropertyStore.name(properties.keyAt(i)), properties.valueAt(i));
+				properties.markClean(i);
 			}
 		}
 
 		if(fillType == FillType.SOLID) {
-			String[] fillAttrs = fill.toSVGString().split(" ");
-			for(String a : fillAttrs) {
-				String[] parts = a.split("=\"");
-				String name = parts[0];
-				String value = parts[1].substring(0, parts[1].indexOf("\""));
-				e.setAttribute(name, value);
+			if(fill != renderedFill || fill.getVersion() != renderedFillVersion) {
+				String[] fillAttrs = fill.getSVGAttributes();
+				writeAttributes(e, fillAttrs, renderedFillAttributes);
+				renderedFill = fill;
+				renderedFillVersion = fill.getVersion();
+				renderedFillAttributes = fillAttrs;
 			}
 		} else if(fillType == FillType.GRADIENT) {
-			e.setAttribute("fill", "url(#" + fillGradient.getId() + ")");
+			String[] fillAttrs = { "fill", "url(#" + fillGradient.getId() + ")" };
+			writeAttributes(e, fillAttrs, renderedFillAttributes);
+			renderedFill = null;
+			renderedFillAttributes = fillAttrs;
 		} else {
 			// wtf?!
 			assert false : "this should not happen";
 		}
 
-		if(stroke != null) {
-			e.setAttribute("stroke", stroke.getColor());
-			e.setAttribute("stroke-width", Double.toString(stroke.getLineWidth()));
-			e.setAttribute("stroke-opacity", Double.toString(stroke.getOpacity()));
-			e.setAttribute("stroke-miterlimit", Double.toString(stroke.getMiterLimit()));
-			LineCap cap = stroke.getLineCap();
-			if(cap != null) {
-				e.setAttribute("stroke-linecap", cap.toString().toLowerCase());
-			}
-			LineJoin join = stroke.getLineJoin();
-			if(join != null) {
-				e.setAttribute("stroke-linejoin", join.toString().toLowerCase());
-			}
-			List<Double> dashes = stroke.getDashArray();
-			if(!dashes.isEmpty()) {
-				String str = Double.toString(dashes.get(0));
-				for(int i=1; i<dashes.size();i++) {
-					str += ',';
-					str += dashes.get(i);
-				}
-				e.setAttribute("stroke-dasharray", str);
-				if(stroke.getDashOffset() != 0.0){
-					e.setAttribute("stroke-dashoffset", Double.toString(stroke.getDashOffset()));
-				}
-			}
+		if(stroke != null && (stroke != renderedStroke || stroke.getVersion() != renderedStrokeVersion)) {
+			checkStrokeBounds();
+			String[] strokeAttrs = stroke.getSVGAttributes();
+			writeAttributes(e, strokeAttrs, renderedStrokeAttributes);
+			renderedStroke = stroke;
+			renderedStrokeVersion = stroke.getVersion();
+			renderedStrokeAttributes = strokeAttrs;
 		}
 
 		if(width > -1) {
-			e.setAttribute("width", "" + width);
+			writeAttribute(e, "width", NumberUtil.format(width));
 		}
 		if(height > -1) {
-			e.setAttribute("height", "" + height);
+			writeAttribute(e, "height", NumberUtil.format(height));
+		}
+
+		if (filter != null) {
+			writeAttribute(e, "filter", "url(#" + filter.getId() + ")");
 		}
 
+		writeTransform(e, transform);
+	}
+
+	/**
+	 * Appends the attributes {@link #redraw()} writes to the element as
+	 * <code> name="value"</code> pairs. The values are computed from the
+	 * model only, so this works without an element as well.
+	 *
+	 * @param out
+	 *            the markup being built
+	 */
+	public void appendSVGAttributes(StringBuilder out) {
+		for (int i = 0; i < properties.size(); i++) {
+			SVGUtil.appendAttribute(out, PropertyStore.name(properties.keyAt(i)), properties.valueAt(i));
+		}
+		if (fillType == FillType.GRADIENT) {
+			SVGUtil.appendAttribute(out, "fill", "url(#" + fillGradient.getId() + ")");
+		} else if (fill != null) {
+			appendSVGAttributes(out, fill.getSVGAttributes());
+		}
+		if (stroke != null) {
+			appendSVGAttributes(out, stroke.getSVGAttributes());
+		}
+		if (width > -1) {
+			SVGUtil.appendAttribute(out, "width", NumberUtil.format(width));
+		}
+		if (height > -1) {
+			SVGUtil.appendAttribute(out, "height", NumberUtil.format(height));
+		}
 		if (filter != null) {
-			e.setAttribute("filter", "url(#" + filter.getId() + ")");
+			SVGUtil.appendAttribute(out, "filter", "url(#" + filter.getId() + ")");
+		}
+		SVGUtil.appendAttribute(out, "transform", getTransform().toSVGString());
+	}
+
+	private static void appendSVGAttributes(StringBuilder out, String[] attributes) {
+		for (int i = 0; i < attributes.length; i += 2) {
+			SVGUtil.appendAttribute(out, attributes[i], attributes[i + 1]);
+		}
+	}
+
+	/**
+	 * Writes the transform of this object unless the matrix is unchanged. If
+	 * native transform updates are enabled and the element already has a
+	 * matrix transform, the matrix is updated numerically without
+	 * formatting or parsing a transform string.
+	 *
+	 * @param e
+	 *            the element of this VectorObject
+	 * @param t
+	 *            the current transform
+	 * @see #setNativeTransformUpdates(boolean)
+	 */
+	protected void writeTransform(Element e, MatrixTransform t) {
+		double[] m = renderedMatrix;
+		if (m != null && m[0] == t.getA() && m[1] == t.getB()
+				&& m[2] == t.getC() && m[3] == t.getD() && m[4] == t.getTX()
+				&& m[5] == t.getTY()) {
+			skippedAttributeWriteCount++;
+			return;
+		}
+		if (m != null && nativeTransformUpdates
+				&& getImpl().setTransformMatrix(e, t.getA(), t.getB(),
+						t.getC(), t.getD(), t.getTX(), t.getTY())) {
+			attributeWriteCount++;
+			// the cached attribute string no longer matches the element
+			renderedAttributes.remove(TRANSFORM);
+		} else {
+			writeAttribute(e, "transform", t.toSVGString());
+		}
+		if (m == null) {
+			m = renderedMatrix = new double[6];
 		}
+		m[0] = t.getA();
+		m[1] = t.getB();
+		m[2] = t.getC();
+		m[3] = t.getD();
+		m[4] = t.getTX();
+		m[5] = t.getTY();
+	}
+
+	/**
+	 * Enables or disables updating already written transforms through the
+	 * element's native SVGMatrix instead of the transform attribute string.
+	 * Disabled by default. Backends without SVG DOM support always fall back
+	 * to the attribute.
+	 *
+	 * @param enabled
+	 *            true to update matrices numerically
+	 */
+	public static void setNativeTransformUpdates(boolean enabled) {
+		nativeTransformUpdates = enabled;
+	}
+
+	public static boolean isNativeTransformUpdates() {
+		return nativeTransformUpdates;
+	}
+
+	/**
+	 * Returns true if this object is part of a DrawingArea that delegates
+	 * its events.
+	 */
+	private boolean isEventDelegated() {
+		DrawingArea area = getDrawingArea();
+		return area != null && area.isEventDelegation();
+	}
+
+	/**
+	 * Returns the VectorObject rendered by the given element when it is
+	 * attached to a DrawingArea with event delegation.
+	 */
+	static VectorObject getObject(Element element) {
+		Object o = element.getPropertyObject(OBJECT_PROPERTY);
+		return o instanceof VectorObject ? (VectorObject) o : null;
+	}
 
-		e.setAttribute("transform", transform.toSVGString());
+	/**
+	 * Adds a mouse handler. The event type is sunk on the element of this
+	 * object when it is attached to a DrawingArea without event delegation,
+	 * and by the DrawingArea otherwise.
+	 */
+	private <H extends EventHandler> HandlerRegistration addMouseHandler(
+			H handler, DomEvent.Type<H> type) {
+		int bits = Event.getTypeInt(type.getName());
+		delegatedEvents |= bits;
+		sinkDelegatedEvents(this, bits);
+		if (isAttached() && !isEventDelegated()) {
+			sinkEvents(bits);
+		}
+		final HandlerRegistration registration = addHandler(handler, type);
+		if (handlerRegistrations == null) {
+			handlerRegistrations = new ArrayList<HandlerRegistration>();
+		}
+		HandlerRegistration tracked = new HandlerRegistration() {
+			public void removeHandler() {
+				if (handlerRegistrations.remove(this)) {
+					registration.removeHandler();
+				}
+			}
+		};
+		handlerRegistrations.add(tracked);
+		return tracked;
+	}
+
+	/**
+	 * Removes all mouse handlers registered to this object and stops
+	 * listening to their events.
+	 */
+	void removeHandlers() {
+		if (handlerRegistrations != null) {
+			for (int i = handlerRegistrations.size() - 1; i >= 0; i--) {
+				handlerRegistrations.get(i).removeHandler();
+			}
+		}
+		if (delegatedEvents != 0 && !isHeadless()) {
+			unsinkEvents(delegatedEvents);
+		}
+		delegatedEvents = 0;
+	}
+
+	/**
+	 * Marks the given event types as listened to in the given widget and its
+	 * ancestors, up to the DrawingArea that sinks them.
+	 */
+	private static void sinkDelegatedEvents(Widget widget, int bits) {
+		while (widget instanceof VectorObject) {
+			VectorObject vo = (VectorObject) widget;
+			if ((vo.subtreeEvents & bits) == bits) {
+				return;
+			}
+			vo.subtreeEvents |= bits;
+			widget = vo.getParent();
+		}
+		if (widget instanceof DrawingArea) {
+			((DrawingArea) widget).sinkDelegatedEvents(bits);
+		}
+	}
+
+	/**
+	 * Requests this VectorObject to be redrawn on the next animation frame.
+	 * Multiple requests within the same frame result in a single
+	 * {@link #redraw()}.
+	 */
+	public void scheduleRedraw() {
+		if (isHeadless()) {
+			return;
+		}
+		RedrawScheduler.get().schedule(this);
+	}
+
+	/**
+	 * Performs a pending redraw of this object immediately.
+	 */
+	void flushRedraw() {
+		if (redrawPending) {
+			redraw();
+		}
+	}
+
+	/**
+	 * Returns true if a redraw has been scheduled but not performed yet.
+	 *
+	 * @return true if a scheduled redraw is pending
+	 */
+	public boolean isRedrawPending() {
+		return redrawPending;
+	}
+
+	/**
+	 * Writes an attribute to the given element unless the same value was
+	 * already written by an earlier redraw.
+	 *
+	 * @param e
+	 *            the element of this VectorObject
+	 * @param name
+	 *            name of the attribute
+	 * @param value
+	 *            new value of the attribute
+	 */
+	protected void writeAttribute(Element e, String name, String value) {
+		if (!renderedAttributes.setString(PropertyStore.key(name), value)) {
+			skippedAttributeWriteCount++;
+			return;
+		}
+		attributeWriteCount++;
+		if ("xlink:href".equals(name)) {
+			SVGUtil.setAttributeNS(SVGUtil.XLINK_NS, e, name, value);
+		} else {
+			e.setAttribute(name, value);
+		}
+	}
+
+	/**
+	 * Writes the given name-value pairs and removes the attributes that were
+	 * part of the previously written set but are missing from the new one.
+	 *
+	 * @param e
+	 *            the element of this VectorObject
+	 * @param attributes
+	 *            alternating attribute names and values
+	 * @param previous
+	 *            the set written previously, or null
+	 */
+	protected void writeAttributes(Element e, String[] attributes, String[] previous) {
+		for (int i = 0; i < attributes.length; i += 2) {
+			writeAttribute(e, attributes[i], attributes[i + 1]);
+		}
+		if (previous == null || previous == attributes) {
+			return;
+		}
+		for (int i = 0; i < previous.length; i += 2) {
+			boolean found = false;
+			for (int j = 0; j < attributes.length && !found; j += 2) {
+				found = previous[i].equals(attributes[j]);
+			}
+			if (!found && renderedAttributes.remove(PropertyStore.key(previous[i]))) {
+				attributeWriteCount++;
+				e.removeAttribute(previous[i]);
+			}
+		}
+	}
+
+	/**
+	 * Forgets the values written by previous redraws, so that the next
+	 * {@link #redraw()} writes every attribute again. Needed if the element
+	 * has been modified by other means than redraw.
+	 */
+	public void invalidateRenderedAttributes() {
+		renderedAttributes.clear();
+		properties.markAllDirty();
+		renderedFill = null;
+		renderedFillAttributes = null;
+		renderedStroke = null;
+		renderedStrokeAttributes = null;
+		renderedMatrix = null;
+	}
+
+	/**
+	 * Returns the number of attribute writes performed by
+	 * {@link #redraw()} of all VectorObjects since the last reset.
+	 *
+	 * @return number of attributes written to the DOM
+	 */
+	public static int getAttributeWriteCount() {
+		return attributeWriteCount;
+	}
+
+	/**
+	 * Returns the number of attribute writes skipped by {@link #redraw()}
+	 * of all VectorObjects since the last reset, because the value was
+	 * unchanged.
+	 *
+	 * @return number of attribute writes saved
+	 */
+	public static int getSkippedAttributeWriteCount() {
+		return skippedAttributeWriteCount;
+	}
+
+	/**
+	 * Resets the counters returned by {@link #getAttributeWriteCount()} and
+	 * {@link #getSkippedAttributeWriteCount()}.
+	 */
+	public static void resetAttributeWriteCounters() {
+		attributeWriteCount = 0;
+		skippedAttributeWriteCount = 0;
 	}
 
 	public String getProperty(String pname) {
@@ -268,33 +960,50 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	}
 
 	public double getPropertyDouble(String pname, double defaultValue) {
-		String p = getProperty(pname, null);
-		if(p != null) {
-			return Double.parseDouble(p);
-		}
-		return defaultValue;
+		int key = PropertyStore.findKey(pname);
+		return key < 0 ? defaultValue : getPropertyDouble(key, defaultValue);
+	}
+
+	/**
+	 * Returns a numeric property by its {@link PropertyStore#key(String) key}
+	 * without any string conversion.
+	 */
+	protected double getPropertyDouble(int key, double defaultValue) {
+		return properties.getNumber(key, defaultValue);
 	}
 
 	public String getProperty(String pname, String defaultValue) {
-		String value = properties.get(pname);
-		if (value == null) {
-			return defaultValue;
-		}
-		return value;
+		int key = PropertyStore.findKey(pname);
+		return key < 0 ? defaultValue : properties.getString(key, defaultValue);
 	}
 
 	public void setProperty(String pname, String pvalue) {
 		if (pvalue == null || pvalue.isEmpty()) {
-			properties.remove(pname);
+			int key = PropertyStore.findKey(pname);
+			if (key >= 0) {
+				properties.remove(key);
+			}
 		} else {
-			properties.put(pname, pvalue);
+			properties.setString(PropertyStore.key(pname), pvalue);
 		}
+		geometryChanged();
 	}
 
 	public void setProperty(String pname, double pvalue) {
 		setPropertyDouble(pname,pvalue);
 	}
 
+	/**
+	 * Stores a numeric property by its {@link PropertyStore#key(String) key}.
+	 * Unlike {@link #setPropertyDouble(String, double)} the name is not
+	 * interpreted, the value is always written as an attribute.
+	 */
+	protected void setProperty(int key, double value) {
+		if (properties.setNumber(key, value)) {
+			geometryChanged();
+		}
+	}
+
 	@Override
 	public void setPropertyDouble(String property, double value) {
 		property = property.toLowerCase();
@@ -309,16 +1018,18 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 			getStroke().setOpacity(value);
 		} else if ("strokewidth".equals(property)) {
 			getStroke().setLineWidth(value);
+			geometryChanged();
 		} else if ("rotation".equals(property)) {
 			setRotation(value);
-		} else {
-			setProperty(property, String.valueOf(value));
+		} else if (properties.setNumber(PropertyStore.key(property), value)) {
+			geometryChanged();
 		}
 	}
 
 	public void setSize(double width, double height) {
 		this.width = width;
 		this.height = height;
+		geometryChanged();
 	}
 
 	public double getWidth() {
@@ -332,17 +1043,23 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	public void setX(double x) {
 		posX = x;
 		transformDirty = true;
+		geometryChanged();
+		viewChanged();
 	}
 
 	public void setY(double y) {
 		posY = y;
 		transformDirty = true;
+		geometryChanged();
+		viewChanged();
 	}
 
 	public void setPosition(double x, double y) {
 		posX = x;
 		posY = y;
 		transformDirty = true;
+		geometryChanged();
+		viewChanged();
 	}
 
 	public double getX() {
@@ -357,6 +1074,132 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 		scaleX = sx;
 		scaleY = sy;
 		transformDirty = true;
+		geometryChanged();
+		viewChanged();
+	}
+
+	/**
+	 * Called when the transform of this object or of an enclosing Group, the
+	 * size of the DrawingArea or the parent of this object has changed, so
+	 * that the object covers a different part of the view. Does nothing by
+	 * default.
+	 */
+	protected void viewChanged() {
+	}
+
+	/**
+	 * Copies the styling, properties and transform of the given template to
+	 * this object, sharing its Stroke and Fill. If the element of this
+	 * object is a clone of the rendered element of the template, the record
+	 * of rendered attributes is copied as well, so that only what differs
+	 * from the template is written by the next redraw.
+	 * <p>
+	 * Subclasses copy their own state as well. When the element is a clone
+	 * it already shows the state of the template, so they must not write it
+	 * to the element.
+	 *
+	 * @param template
+	 *            an object of the type of this object
+	 * @param clonedElement
+	 *            true if the element of this object is a clone of the
+	 *            element of the template
+	 */
+	protected void copyFrom(VectorObject template, boolean clonedElement) {
+		stroke = template.stroke;
+		ownStroke = false;
+		fill = template.fill;
+		ownFill = false;
+		fillType = template.fillType;
+		fillGradient = template.fillGradient;
+		filter = template.filter;
+		properties = template.properties.copy();
+		width = template.width;
+		height = template.height;
+		posX = template.posX;
+		posY = template.posY;
+		scaleX = template.scaleX;
+		scaleY = template.scaleY;
+		rotation = template.rotation;
+		transformDirty = true;
+		if (clonedElement) {
+			renderedAttributes = template.renderedAttributes.copy();
+			renderedFill = template.renderedFill;
+			renderedFillVersion = template.renderedFillVersion;
+			renderedFillAttributes = template.renderedFillAttributes;
+			renderedStroke = template.renderedStroke;
+			renderedStrokeVersion = template.renderedStrokeVersion;
+			renderedStrokeAttributes = template.renderedStrokeAttributes;
+			renderedMatrix = template.renderedMatrix == null ? null
+					: template.renderedMatrix.clone();
+		} else {
+			invalidateRenderedAttributes();
+		}
+		geometryChanged();
+		scheduleRedraw();
+	}
+
+	/**
+	 * Returns true if the property with the given
+	 * {@link PropertyStore#key(String) key} defines the geometry of this
+	 * object, such as the radius of a Circle, and is kept by
+	 * {@link #reset()}. Returns false by default.
+	 */
+	protected boolean isGeometryProperty(int key) {
+		return false;
+	}
+
+	/**
+	 * Restores the stroke, fill, filter, transform and style name of this
+	 * object to the values set by the constructor and removes all properties
+	 * except the {@link #isGeometryProperty(int) geometry}, so that a
+	 * {@link VectorObjectPool} can hand it out again. The element and the
+	 * Stroke and Fill instances created by the constructor are reused. The
+	 * geometry is left as it was, so the user of a pooled object should set
+	 * it again.
+	 */
+	public void reset() {
+		if (ownStroke) {
+			stroke.reset("black");
+		} else {
+			stroke = new Stroke("black");
+			ownStroke = true;
+		}
+		if (ownFill) {
+			fill.reset("white");
+		} else {
+			fill = new Fill("white");
+			ownFill = true;
+		}
+		fillType = FillType.SOLID;
+		fillGradient = null;
+		if (filter != null) {
+			filter = null;
+			if (!isHeadless()
+					&& renderedAttributes.remove(PropertyStore.key("filter"))) {
+				getElement().removeAttribute("filter");
+			}
+		}
+		for (int i = properties.size() - 1; i >= 0; i--) {
+			int key = properties.keyAt(i);
+			if (!isGeometryProperty(key)) {
+				properties.remove(key);
+				if (!isHeadless() && renderedAttributes.remove(key)) {
+					getElement().removeAttribute(PropertyStore.name(key));
+				}
+			}
+		}
+		if (styleNameSet) {
+			getImpl().clearStyleName(getElement());
+			styleNameSet = false;
+		}
+		posX = 0;
+		posY = 0;
+		scaleX = 1;
+		scaleY = 1;
+		rotation = 0;
+		transformDirty = true;
+		geometryChanged();
+		scheduleRedraw();
 	}
 
 	public double getScaleX() {
@@ -374,6 +1217,8 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	public void setRotation(double degree) {
 		rotation = degree;
 		transformDirty = true;
+		geometryChanged();
+		viewChanged();
 	}
 
 	@Override
@@ -385,6 +1230,11 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	public void setParent(Widget parent) {
 		Widget oldParent = this.parent;
 		if (parent == null) {
+			DrawingArea area = getDrawingArea();
+			if (area != null) {
+				area.objectRemoved(this);
+			}
+			invalidateParentBounds();
 			if (oldParent != null && oldParent.isAttached()) {
 				onDetach();
 				assert !isAttached() : "Failure of "
@@ -398,6 +1248,15 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 						"Cannot set a new parent without first clearing the old parent");
 			}
 			this.parent = parent;
+			invalidateParentBounds();
+			DrawingArea area = getDrawingArea();
+			if (area != null) {
+				area.boundsChanged(this);
+			}
+			if (subtreeEvents != 0) {
+				sinkDelegatedEvents(parent, subtreeEvents);
+			}
+			viewChanged();
 			if (parent.isAttached()) {
 				onAttach();
 				assert isAttached() : "Failure of " + this.getClass().getName()
@@ -408,7 +1267,11 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 
 	@Override
 	public void setStyleName(String style) {
+		if (isHeadless()) {
+			return;
+		}
 		getImpl().setStyleName(getElement(), style);
+		styleNameSet = true;
 	}
 
 	@Override
@@ -431,7 +1294,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * google.gwt.event.dom.client.ClickHandler)
 	 */
 	public HandlerRegistration addClickHandler(ClickHandler handler) {
-		return addDomHandler(handler, ClickEvent.getType());
+		return addMouseHandler(handler, ClickEvent.getType());
 	}
 
 	/*
@@ -442,7 +1305,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * (com.google.gwt.event.dom.client.DoubleClickHandler)
 	 */
 	public HandlerRegistration addDoubleClickHandler(DoubleClickHandler handler) {
-		return addDomHandler(handler, DoubleClickEvent.getType());
+		return addMouseHandler(handler, DoubleClickEvent.getType());
 	}
 
 	/*
@@ -453,7 +1316,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * (com.google.gwt.event.dom.client.MouseDownHandler)
 	 */
 	public HandlerRegistration addMouseDownHandler(MouseDownHandler handler) {
-		return addDomHandler(handler, MouseDownEvent.getType());
+		return addMouseHandler(handler, MouseDownEvent.getType());
 	}
 
 	/*
@@ -464,7 +1327,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * com.google.gwt.event.dom.client.MouseUpHandler)
 	 */
 	public HandlerRegistration addMouseUpHandler(MouseUpHandler handler) {
-		return addDomHandler(handler, MouseUpEvent.getType());
+		return addMouseHandler(handler, MouseUpEvent.getType());
 	}
 
 	/*
@@ -475,7 +1338,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * (com.google.gwt.event.dom.client.MouseOutHandler)
 	 */
 	public HandlerRegistration addMouseOutHandler(MouseOutHandler handler) {
-		return addDomHandler(handler, MouseOutEvent.getType());
+		return addMouseHandler(handler, MouseOutEvent.getType());
 	}
 
 	/*
@@ -486,7 +1349,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * (com.google.gwt.event.dom.client.MouseOverHandler)
 	 */
 	public HandlerRegistration addMouseOverHandler(MouseOverHandler handler) {
-		return addDomHandler(handler, MouseOverEvent.getType());
+		return addMouseHandler(handler, MouseOverEvent.getType());
 	}
 
 	/*
@@ -497,7 +1360,7 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * (com.google.gwt.event.dom.client.MouseMoveHandler)
 	 */
 	public HandlerRegistration addMouseMoveHandler(MouseMoveHandler handler) {
-		return addDomHandler(handler, MouseMoveEvent.getType());
+		return addMouseHandler(handler, MouseMoveEvent.getType());
 	}
 
 	/*
@@ -508,7 +1371,19 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	 * (com.google.gwt.event.dom.client.MouseWheelHandler)
 	 */
 	public HandlerRegistration addMouseWheelHandler(MouseWheelHandler handler) {
-		return addDomHandler(handler, MouseWheelEvent.getType());
+		return addMouseHandler(handler, MouseWheelEvent.getType());
+	}
+
+	/**
+	 * Hands mouse move and wheel events over to the DrawingArea when it
+	 * coalesces input.
+	 */
+	@Override
+	public void onBrowserEvent(Event event) {
+		DrawingArea area = getDrawingArea();
+		if (area == null || !area.deferEvent(this, event)) {
+			super.onBrowserEvent(event);
+		}
 	}
 
 	/*
@@ -519,17 +1394,30 @@ HasAllMouseHandlers, HasDoubleClickHandlers, Animatable {
 	@Override
 	protected void onAttach() {
 		super.onAttach();
+		if (!isHeadless()) {
+			if (isEventDelegated()) {
+				getElement().setPropertyObject(OBJECT_PROPERTY, this);
+				if (delegatedEvents != 0) {
+					// sunk while part of an area without delegation
+					unsinkEvents(delegatedEvents);
+				}
+			} else if (delegatedEvents != 0) {
+				sinkEvents(delegatedEvents);
+			}
+		}
 		getImpl().onAttach(getElement(), isAttached());
 	}
 
-	/*
-	 * (non-Javadoc)
-	 *
-	 * @see com.google.gwt.user.client.ui.Widget#onDetach()
+	/**
+	 * Clears the reference from the element to this object, so that a
+	 * detached element does not keep pointing at its widget.
 	 */
 	@Override
 	protected void onDetach() {
 		super.onDetach();
+		if (!isHeadless()) {
+			getElement().setPropertyObject(OBJECT_PROPERTY, null);
+		}
 	}
 
 }
\ No newline at end of file
@@ -52,6 +52,10 @@ public interface VectorObjectContainer {
 
 	/**
 	 * Remove the given VectorObject from this VectorObjectContainer.
+	 * Removing the first or the last object takes constant bookkeeping, while
+	 * removing one in between makes the next position lookup linear in the
+	 * number of objects after it. The child list shifts its elements in
+	 * either case, so use {@link #clear()} to remove all objects at once.
 	 *
 	 * @param vo
 	 *            VectorObject to be removed
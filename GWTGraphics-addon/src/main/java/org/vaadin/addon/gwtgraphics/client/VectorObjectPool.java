@@ -0,0 +1,223 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * A bounded pool of VectorObjects of one kind, for views that keep
+ * replacing large numbers of short-lived shapes. An object released to the
+ * pool is removed from its container and handed out again by
+ * {@link #obtain()} after {@link Factory#recycle(VectorObject)}, which
+ * usually calls {@link VectorObject#reset()} to keep its element and its
+ * Stroke and Fill instances. The mouse handlers of an
+ * object are removed when it is released. Its geometry is not reset, so
+ * the objects of a pool should be positioned and sized after they have been
+ * obtained.
+ * <p>
+ * When the pool is full, released objects are left to the garbage
+ * collector. The hit, miss and eviction counts tell how well the maximum
+ * size fits the churn of the view.
+ *
+ * @param <T>
+ *            the type of the pooled objects
+ */
+public class VectorObjectPool<T extends VectorObject> {
+
+	/**
+	 * Creates the objects of a pool when there is none to reuse, and
+	 * prepares released objects for reuse.
+	 *
+	 * @param <T>
+	 *            the type of the pooled objects
+	 */
+	public interface Factory<T extends VectorObject> {
+
+		/**
+		 * Returns a new object for the pool.
+		 *
+		 * @return the new object
+		 */
+		T create();
+
+		/**
+		 * Brings a released object to the state of a new object returned by
+		 * {@link #create()}, typically by calling
+		 * {@link VectorObject#reset()} and configuring it like a new one.
+		 *
+		 * @param vo
+		 *            the object about to be handed out again
+		 */
+		void recycle(T vo);
+	}
+
+	private final Factory<T> factory;
+
+	private final List<T> free = new ArrayList<T>();
+
+	private int maxSize;
+
+	private int hitCount;
+	private int missCount;
+	private int evictionCount;
+
+	/**
+	 * Creates an empty pool.
+	 *
+	 * @param factory
+	 *            the factory creating new objects
+	 * @param maxSize
+	 *            the maximum number of objects kept for reuse
+	 */
+	public VectorObjectPool(Factory<T> factory, int maxSize) {
+		this.factory = factory;
+		setMaxSize(maxSize);
+	}
+
+	/**
+	 * Returns an object from the pool recycled by the factory, or a new one
+	 * from the factory if the pool is empty.
+	 *
+	 * @return an object without a parent
+	 */
+	public T obtain() {
+		if (free.isEmpty()) {
+			missCount++;
+			return factory.create();
+		}
+		hitCount++;
+		T vo = free.remove(free.size() - 1);
+		vo.pooled = false;
+		factory.recycle(vo);
+		return vo;
+	}
+
+	/**
+	 * Removes the given object from its container and its mouse handlers,
+	 * and keeps it for reuse unless the pool is full. The object must not
+	 * be used after this.
+	 *
+	 * @param vo
+	 *            the object to release
+	 * @return true if the object was kept, false if it was evicted
+	 * @throws IllegalStateException
+	 *             if the object has already been released
+	 */
+	public boolean release(T vo) {
+		if (vo.pooled) {
+			throw new IllegalStateException(
+					"The object has already been released");
+		}
+		Widget parent = vo.getParent();
+		if (parent instanceof VectorObjectContainer) {
+			((VectorObjectContainer) parent).remove(vo);
+		}
+		vo.removeHandlers();
+		if (free.size() >= maxSize) {
+			evictionCount++;
+			return false;
+		}
+		vo.pooled = true;
+		free.add(vo);
+		return true;
+	}
+
+	/**
+	 * Returns the number of objects waiting for reuse.
+	 *
+	 * @return the number of pooled objects
+	 */
+	public int getSize() {
+		return free.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum number of objects kept for reuse. Objects above the
+	 * new limit are evicted.
+	 *
+	 * @param maxSize
+	 *            the new maximum size
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Negative maximum size");
+		}
+		this.maxSize = maxSize;
+		while (free.size() > maxSize) {
+			evict(free.size() - 1);
+		}
+	}
+
+	/**
+	 * Evicts all objects waiting for reuse.
+	 */
+	public void clear() {
+		for (int i = free.size() - 1; i >= 0; i--) {
+			evict(i);
+		}
+	}
+
+	private void evict(int index) {
+		free.remove(index).pooled = false;
+		evictionCount++;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #obtain()} that reused an
+	 * object.
+	 *
+	 * @return the hit count
+	 */
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of calls to {@link #obtain()} that created a new
+	 * object.
+	 *
+	 * @return the miss count
+	 */
+	public int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of released objects that were not kept because the
+	 * pool was full or its maximum size was reduced.
+	 *
+	 * @return the eviction count
+	 */
+	public int getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Sets the hit, miss and eviction counts to zero.
+	 */
+	public void resetStatistics() {
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+	}
+}
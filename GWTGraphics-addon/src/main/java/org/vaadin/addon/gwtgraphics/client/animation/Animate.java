@@ -15,6 +15,8 @@
  */
 package org.vaadin.addon.gwtgraphics.client.animation;
 
+import org.vaadin.addon.gwtgraphics.client.VectorObject;
+
 import com.google.gwt.animation.client.Animation;
 
 /**
@@ -42,7 +44,12 @@ public class Animate {
 		protected void onUpdate(double progress) {
 			double value = (endValue - startValue) * progress + startValue;
 			target.setPropertyDouble(property, value);
-			target.redraw();
+			if (target instanceof VectorObject) {
+				// coalesce with other animations of the same target
+				((VectorObject) target).scheduleRedraw();
+			} else {
+				target.redraw();
+			}
 		}
 
 		@Override
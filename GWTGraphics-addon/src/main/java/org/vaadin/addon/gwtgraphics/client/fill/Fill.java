@@ -1,5 +1,7 @@
 package org.vaadin.addon.gwtgraphics.client.fill;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+
 public class Fill {
 
 	// TODO: add fill-rule (see https://developer.mozilla.org/en-US/docs/Web/SVG/Attribute/fill-rule)
@@ -7,6 +9,16 @@ public class Fill {
 	protected String style;
 	protected double opacity = 1.0;
 
+	/**
+	 * Incremented on every change, see {@link #getVersion()}.
+	 */
+	protected int version;
+
+	/**
+	 * Cached result of {@link #getSVGAttributes()}, null when outdated.
+	 */
+	protected String[] attributes;
+
 	public Fill() {
 		style = "white";
 	}
@@ -15,8 +27,22 @@ public class Fill {
 		this.style = style;
 	}
 
+	/**
+	 * Restores the default opacity and sets the given style, as if this Fill
+	 * had just been created.
+	 *
+	 * @param style
+	 *            the new style
+	 */
+	public void reset(String style) {
+		this.style = style;
+		opacity = 1.0;
+		changed();
+	}
+
 	public void setStyle(String style) {
 		this.style = style;
+		changed();
 	}
 
 	public String getStyle() {
@@ -25,16 +51,51 @@ public class Fill {
 
 	public void setOpacity(double opacity) {
 		this.opacity = Math.max(0, Math.min(opacity, 1));
+		changed();
 	}
 
 	public double getOpacity() {
 		return opacity;
 	}
 
+	/**
+	 * Returns the version of this Fill. The version changes every time a
+	 * property of the Fill is modified.
+	 *
+	 * @return current version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the SVG attributes of this Fill as name-value pairs. The array
+	 * is computed once after each change and shared by all objects using
+	 * this Fill, so it must not be modified.
+	 *
+	 * @return an array of alternating attribute names and values
+	 */
+	public String[] getSVGAttributes() {
+		if (attributes == null) {
+			if (opacity != 1.0) {
+				attributes = new String[] { "fill", String.valueOf(style),
+						"fill-opacity", NumberUtil.format(opacity) };
+			} else {
+				attributes = new String[] { "fill", String.valueOf(style) };
+			}
+		}
+		return attributes;
+	}
+
+	protected void changed() {
+		attributes = null;
+		version++;
+	}
+
 	public String toSVGString() {
 		String s = "fill=\"" + style + "\"";
 		if(opacity != 1.0) {
-			s += " fill-opacity=\"" + opacity + "\"";
+			s += " fill-opacity=\"" + NumberUtil.format(opacity) + "\"";
 		}
 		return s;
 	}
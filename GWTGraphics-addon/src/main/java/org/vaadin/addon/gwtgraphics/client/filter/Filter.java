@@ -1,6 +1,8 @@
 package org.vaadin.addon.gwtgraphics.client.filter;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.vaadin.addon.gwtgraphics.client.Definition;
@@ -54,6 +56,14 @@ public class Filter implements Definition{
 		}
 	}
 
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	public Collection<FilterEffect> getEffects() {
+		return effects.getEffects();
+	}
+
 	@Override
 	public Element getElement() {
 		Element element = SVGUtil.createSVGElementNS("filter");
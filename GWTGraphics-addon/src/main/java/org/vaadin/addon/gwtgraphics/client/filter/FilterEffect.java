@@ -44,6 +44,14 @@ public class FilterEffect {
 		return id;
 	}
 
+	public String getTag() {
+		return tag;
+	}
+
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
 	public void setInput(String s) {
 		if(s == null) {
 			inputSource = InputSource.SOURCE_GRAPHIC;
@@ -28,6 +28,10 @@ public class FilterEffectGroup {
 		effects.remove(e);
 	}
 
+	Set<FilterEffect> getEffects() {
+		return effects;
+	}
+
 	List<Element> getElements() {
 		List<Element> elements = new ArrayList<>();
 		for(FilterEffect effect: effects) {
@@ -136,7 +136,7 @@ public abstract class Gradient implements Definition{
 		stops.remove(stop);
 	}
 
-	protected Set<GradientStop> getStops() {
+	public Set<GradientStop> getStops() {
 		return stops;
 	}
 
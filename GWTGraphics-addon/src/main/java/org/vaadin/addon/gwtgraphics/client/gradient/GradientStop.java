@@ -1,5 +1,6 @@
 package org.vaadin.addon.gwtgraphics.client.gradient;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
 import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
 
 import com.google.gwt.dom.client.Element;
@@ -79,9 +80,9 @@ public class GradientStop{
 
 	public Element getElement() {
 		Element se = SVGUtil.createSVGElementNS("stop");
-		se.setAttribute("offset", "" + getOffset());
+		se.setAttribute("offset", NumberUtil.format(getOffset()));
 		se.setAttribute("stop-color", getColor());
-		se.setAttribute("stop-opacity", "" + getOpacity());
+		se.setAttribute("stop-opacity", NumberUtil.format(getOpacity()));
 		return se;
 	}
 
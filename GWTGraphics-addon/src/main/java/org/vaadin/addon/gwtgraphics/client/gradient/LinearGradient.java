@@ -1,5 +1,6 @@
 package org.vaadin.addon.gwtgraphics.client.gradient;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
 import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
 
 import com.google.gwt.dom.client.Element;
@@ -38,8 +39,8 @@ public class LinearGradient extends Gradient {
 	public void setStartPosition(double x, double y) {
 		x0 = x;
 		y0 = y;
-		setParameter("x0", "" + x);
-		setParameter("y0", "" + y);
+		setParameter("x0", NumberUtil.format(x));
+		setParameter("y0", NumberUtil.format(y));
 	}
 
 	public double getStartX() {
@@ -60,8 +61,8 @@ public class LinearGradient extends Gradient {
 	public void setEndPosition(double x, double y) {
 		x1 = x;
 		y1 = y;
-		setParameter("x1", "" + x);
-		setParameter("y1", "" + y);
+		setParameter("x1", NumberUtil.format(x));
+		setParameter("y1", NumberUtil.format(y));
 	}
 
 	public double getEndX() {
@@ -76,10 +77,10 @@ public class LinearGradient extends Gradient {
 	public Element getElement() {
 
 		Element element = SVGUtil.createSVGElementNS("linearGradient");
-		element.setAttribute("x1", ""+x0);
-		element.setAttribute("y1", ""+y0);
-		element.setAttribute("x2", ""+x1);
-		element.setAttribute("y2", ""+y1);
+		element.setAttribute("x1", NumberUtil.format(x0));
+		element.setAttribute("y1", NumberUtil.format(y0));
+		element.setAttribute("x2", NumberUtil.format(x1));
+		element.setAttribute("y2", NumberUtil.format(y1));
 		element.setAttribute("id", getId());
 		for (GradientStop stop: getStops()) {
 			element.appendChild(stop.getElement());
@@ -1,5 +1,6 @@
 package org.vaadin.addon.gwtgraphics.client.gradient;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
 import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
 
 import com.google.gwt.dom.client.Element;
@@ -96,11 +97,11 @@ public class RadialGradient extends Gradient {
 	@Override
 	public Element getElement() {
 		Element element = SVGUtil.createSVGElementNS("radialGradient");
-		element.setAttribute("radius", ""+radius);
-		element.setAttribute("cx", ""+cx);
-		element.setAttribute("cy", ""+cy);
-		element.setAttribute("fx", ""+fx);
-		element.setAttribute("fy", ""+fy);
+		element.setAttribute("radius", NumberUtil.format(radius));
+		element.setAttribute("cx", NumberUtil.format(cx));
+		element.setAttribute("cy", NumberUtil.format(cy));
+		element.setAttribute("fx", NumberUtil.format(fx));
+		element.setAttribute("fy", NumberUtil.format(fy));
 		element.setAttribute("id", getId());
 		for (GradientStop stop: getStops()) {
 			element.appendChild(stop.getElement());
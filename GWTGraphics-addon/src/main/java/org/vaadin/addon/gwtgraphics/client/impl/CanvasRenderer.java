@@ -0,0 +1,420 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.addon.gwtgraphics.client.Group;
+import org.vaadin.addon.gwtgraphics.client.Image;
+import org.vaadin.addon.gwtgraphics.client.Line;
+import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.VectorObjectContainer;
+import org.vaadin.addon.gwtgraphics.client.fill.Fill;
+import org.vaadin.addon.gwtgraphics.client.gradient.Gradient;
+import org.vaadin.addon.gwtgraphics.client.gradient.Gradient.GradientUnits;
+import org.vaadin.addon.gwtgraphics.client.gradient.GradientStop;
+import org.vaadin.addon.gwtgraphics.client.gradient.LinearGradient;
+import org.vaadin.addon.gwtgraphics.client.gradient.RadialGradient;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+import org.vaadin.addon.gwtgraphics.client.shape.Circle;
+import org.vaadin.addon.gwtgraphics.client.shape.Ellipse;
+import org.vaadin.addon.gwtgraphics.client.shape.Path;
+import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
+import org.vaadin.addon.gwtgraphics.client.shape.Text;
+import org.vaadin.addon.gwtgraphics.client.stroke.Stroke;
+import org.vaadin.addon.gwtgraphics.client.transform.MatrixTransform;
+
+import com.google.gwt.canvas.dom.client.CanvasGradient;
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.core.client.JsArrayNumber;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.CanvasElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+
+/**
+ * Paints a VectorObject tree into a single canvas element with immediate
+ * mode drawing. Each paint clears the canvas and draws the whole tree from
+ * the model, so the objects' own elements are never attached to the
+ * document.
+ * <p>
+ * Filters are not supported and are ignored.
+ * </p>
+ */
+public class CanvasRenderer extends SceneRenderer {
+
+	protected final CanvasElement canvas;
+
+	protected final Context2d ctx;
+
+	/**
+	 * Executed when an image used by the scene has finished loading.
+	 */
+	protected final ScheduledCommand repaintCommand;
+
+	protected final Map<String, ImageElement> images = new HashMap<String, ImageElement>();
+
+	/**
+	 * Local bounding box of the shape being painted, used for gradients in
+	 * objectBoundingBox units.
+	 */
+	private double minX, minY, maxX, maxY;
+
+	/**
+	 * Creates a renderer for the given canvas.
+	 *
+	 * @param canvas
+	 *            the canvas to paint into
+	 * @param repaintCommand
+	 *            command that schedules a new paint, executed when an image
+	 *            has been loaded
+	 */
+	public CanvasRenderer(CanvasElement canvas, ScheduledCommand repaintCommand) {
+		this.canvas = canvas;
+		this.ctx = canvas.getContext2d();
+		this.repaintCommand = repaintCommand;
+	}
+
+	/**
+	 * Clears the canvas and paints the children of the given container.
+	 *
+	 * @param container
+	 *            the root container, usually a DrawingArea
+	 */
+	public void paint(VectorObjectContainer container) {
+		ctx.setTransform(1, 0, 0, 1, 0, 0);
+		ctx.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		renderChildren(container);
+	}
+
+	@Override
+	public void render(VectorObject vo) {
+		if (!vo.isVisible()) {
+			return;
+		}
+		ctx.save();
+		MatrixTransform t = vo.getTransform();
+		ctx.transform(t.getA(), t.getB(), t.getC(), t.getD(), t.getTX(), t.getTY());
+		super.render(vo);
+		ctx.restore();
+	}
+
+	@Override
+	protected void renderGroup(Group group) {
+		renderChildren(group);
+	}
+
+	@Override
+	protected void renderRectangle(Rectangle rectangle) {
+		double w = Math.max(0, rectangle.getWidth());
+		double h = Math.max(0, rectangle.getHeight());
+		double r = Math.min(rectangle.getRoundedCorners(), Math.min(w, h) / 2);
+		ctx.beginPath();
+		if (r > 0) {
+			ctx.moveTo(r, 0);
+			ctx.arcTo(w, 0, w, h, r);
+			ctx.arcTo(w, h, 0, h, r);
+			ctx.arcTo(0, h, 0, 0, r);
+			ctx.arcTo(0, 0, w, 0, r);
+			ctx.closePath();
+		} else {
+			ctx.rect(0, 0, w, h);
+		}
+		setBounds(0, 0, w, h);
+		fillAndStroke(rectangle);
+	}
+
+	@Override
+	protected void renderCircle(Circle circle) {
+		double r = circle.getRadius();
+		ctx.beginPath();
+		ctx.arc(0, 0, r, 0, 2 * Math.PI);
+		setBounds(-r, -r, r, r);
+		fillAndStroke(circle);
+	}
+
+	@Override
+	protected void renderEllipse(Ellipse ellipse) {
+		double cx = ellipse.getCX();
+		double cy = ellipse.getCY();
+		double rx = ellipse.getRadiusX();
+		double ry = ellipse.getRadiusY();
+		if (rx <= 0 || ry <= 0) {
+			return;
+		}
+		ctx.beginPath();
+		ctx.save();
+		ctx.translate(cx, cy);
+		ctx.scale(rx, ry);
+		ctx.arc(0, 0, 1, 0, 2 * Math.PI);
+		ctx.restore();
+		setBounds(cx - rx, cy - ry, cx + rx, cy + ry);
+		fillAndStroke(ellipse);
+	}
+
+	@Override
+	protected void renderLine(Line line) {
+		ctx.beginPath();
+		ctx.moveTo(line.getX0(), line.getY0());
+		ctx.lineTo(line.getX1(), line.getY1());
+		setBounds(line.getX0(), line.getY0(), line.getX1(), line.getY1());
+		stroke(line.getStroke());
+	}
+
+	@Override
+	protected void renderPath(Path path) {
+		ctx.beginPath();
+		minX = minY = Double.POSITIVE_INFINITY;
+		maxX = maxY = Double.NEGATIVE_INFINITY;
+		path.visit(pathTracer);
+		fillAndStroke(path);
+	}
+
+	/**
+	 * Adds path segments to the current canvas path and updates the local
+	 * bounding box.
+	 */
+	private final PathVisitor pathTracer = new PathVisitor() {
+		@Override
+		public void moveTo(double x, double y) {
+			ctx.moveTo(x, y);
+			include(x, y);
+		}
+
+		@Override
+		public void lineTo(double x0, double y0, double x, double y) {
+			ctx.lineTo(x, y);
+			include(x, y);
+		}
+
+		@Override
+		public void curveTo(double x0, double y0, double x1, double y1,
+				double x2, double y2, double x, double y) {
+			ctx.bezierCurveTo(x1, y1, x2, y2, x, y);
+			include(x1, y1);
+			include(x2, y2);
+			include(x, y);
+		}
+
+		@Override
+		public void ellipticArc(double[] c, double x, double y) {
+			ctx.save();
+			ctx.translate(c[0], c[1]);
+			ctx.rotate(c[4]);
+			ctx.scale(c[2], c[3]);
+			ctx.arc(0, 0, 1, c[5], c[5] + c[6], c[6] < 0);
+			ctx.restore();
+			double r = Math.max(c[2], c[3]);
+			include(c[0] - r, c[1] - r);
+			include(c[0] + r, c[1] + r);
+		}
+
+		@Override
+		public void close(double x0, double y0, double startX, double startY) {
+			ctx.closePath();
+		}
+	};
+
+	@Override
+	protected void renderText(Text text) {
+		if (text.getText() == null || text.getText().isEmpty()) {
+			return;
+		}
+		ctx.setFont(text.getFontSize() + "px " + text.getFontFamily());
+		ctx.setTextAlign("start");
+		ctx.setTextBaseline("alphabetic");
+		Fill fill = text.getFill();
+		if (fill != null && isPaint(fill.getStyle())) {
+			ctx.setGlobalAlpha(fill.getOpacity());
+			ctx.setFillStyle(fill.getStyle());
+			ctx.fillText(text.getText(), 0, 0);
+		}
+		Stroke stroke = text.getStroke();
+		if (applyStroke(stroke)) {
+			ctx.strokeText(text.getText(), 0, 0);
+		}
+	}
+
+	@Override
+	protected void renderImage(Image image) {
+		String href = image.getHref();
+		if (href == null || href.isEmpty()) {
+			return;
+		}
+		ImageElement img = images.get(href);
+		if (img == null) {
+			img = Document.get().createImageElement();
+			addLoadHandler(img, repaintCommand);
+			img.setSrc(href);
+			images.put(href, img);
+		}
+		if (img.getPropertyBoolean("complete") && img.getWidth() > 0) {
+			ctx.setGlobalAlpha(1);
+			ctx.drawImage(img, 0, 0, image.getWidth(), image.getHeight());
+		}
+	}
+
+	private void setBounds(double x1, double y1, double x2, double y2) {
+		minX = Math.min(x1, x2);
+		minY = Math.min(y1, y2);
+		maxX = Math.max(x1, x2);
+		maxY = Math.max(y1, y2);
+	}
+
+	private void include(double x, double y) {
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+	}
+
+	/**
+	 * Fills and strokes the current path with the paint of the given object.
+	 */
+	protected void fillAndStroke(VectorObject vo) {
+		Gradient gradient = vo.getGradientFill();
+		if (gradient != null) {
+			fillGradient(gradient);
+		} else {
+			Fill fill = vo.getFill();
+			if (fill != null && isPaint(fill.getStyle())) {
+				ctx.setGlobalAlpha(fill.getOpacity());
+				ctx.setFillStyle(fill.getStyle());
+				ctx.fill();
+			}
+		}
+		stroke(vo.getStroke());
+	}
+
+	protected void stroke(Stroke stroke) {
+		if (applyStroke(stroke)) {
+			ctx.stroke();
+		}
+	}
+
+	/**
+	 * Sets the stroke style of the context.
+	 *
+	 * @return false if nothing should be stroked
+	 */
+	protected boolean applyStroke(Stroke stroke) {
+		if (stroke == null || !isPaint(stroke.getColor())
+				|| stroke.getLineWidth() <= 0) {
+			return false;
+		}
+		ctx.setGlobalAlpha(stroke.getOpacity());
+		ctx.setStrokeStyle(stroke.getColor());
+		ctx.setLineWidth(stroke.getLineWidth());
+		ctx.setMiterLimit(stroke.getMiterLimit());
+		ctx.setLineCap(stroke.getLineCap() == null ? "butt" : stroke
+				.getLineCap().toString().toLowerCase());
+		ctx.setLineJoin(stroke.getLineJoin() == null ? "miter" : stroke
+				.getLineJoin().toString().toLowerCase());
+		JsArrayNumber dashes = JavaScriptObject.createArray().cast();
+		List<Double> dashArray = stroke.getDashArray();
+		if (dashArray != null) {
+			for (Double d : dashArray) {
+				dashes.push(d.doubleValue());
+			}
+		}
+		setLineDash(ctx, dashes, stroke.getDashOffset());
+		return true;
+	}
+
+	protected void fillGradient(Gradient gradient) {
+		boolean boundingBox = gradient.getGradientUnits() == GradientUnits.OBJECT_BOUNDING_BOX;
+		double w = maxX - minX;
+		double h = maxY - minY;
+		if (boundingBox && !(w > 0 && h > 0)) {
+			return;
+		}
+		CanvasGradient cg;
+		if (gradient instanceof LinearGradient) {
+			LinearGradient g = (LinearGradient) gradient;
+			cg = ctx.createLinearGradient(g.getStartX(), g.getStartY(),
+					g.getEndX(), g.getEndY());
+		} else if (gradient instanceof RadialGradient) {
+			RadialGradient g = (RadialGradient) gradient;
+			cg = ctx.createRadialGradient(g.getFx(), g.getFy(), 0, g.getCx(),
+					g.getCy(), g.getRadius());
+		} else {
+			return;
+		}
+		for (GradientStop stop : gradient.getStops()) {
+			cg.addColorStop(stop.getOffset(),
+					toCSSColor(stop.getColor(), stop.getOpacity()));
+		}
+		ctx.save();
+		if (boundingBox) {
+			// the fill style is interpreted in the current coordinate system
+			ctx.translate(minX, minY);
+			ctx.scale(w, h);
+		}
+		ctx.setGlobalAlpha(1);
+		ctx.setFillStyle(cg);
+		ctx.fill();
+		ctx.restore();
+	}
+
+	private static boolean isPaint(String color) {
+		return color != null && !color.isEmpty() && !"none".equals(color);
+	}
+
+	/**
+	 * Combines a color and an opacity. Only hexadecimal colors can carry the
+	 * opacity, other colors are returned as is.
+	 */
+	private static String toCSSColor(String color, double opacity) {
+		if (opacity >= 1 || color == null || !color.startsWith("#")
+				|| (color.length() != 4 && color.length() != 7)) {
+			return color;
+		}
+		int r, g, b;
+		try {
+			if (color.length() == 4) {
+				r = Integer.parseInt(color.substring(1, 2), 16) * 17;
+				g = Integer.parseInt(color.substring(2, 3), 16) * 17;
+				b = Integer.parseInt(color.substring(3, 4), 16) * 17;
+			} else {
+				r = Integer.parseInt(color.substring(1, 3), 16);
+				g = Integer.parseInt(color.substring(3, 5), 16);
+				b = Integer.parseInt(color.substring(5, 7), 16);
+			}
+		} catch (NumberFormatException e) {
+			return color;
+		}
+		return "rgba(" + r + "," + g + "," + b + "," + opacity + ")";
+	}
+
+	private static native void setLineDash(Context2d ctx, JsArrayNumber dashes,
+			double offset) /*-{
+		if (ctx.setLineDash) {
+			ctx.setLineDash(dashes);
+			ctx.lineDashOffset = offset;
+		}
+	}-*/;
+
+	private static native void addLoadHandler(ImageElement img,
+			ScheduledCommand command) /*-{
+		img.onload = $entry(function() {
+			command.@com.google.gwt.core.client.Scheduler.ScheduledCommand::execute()();
+		});
+	}-*/;
+
+}
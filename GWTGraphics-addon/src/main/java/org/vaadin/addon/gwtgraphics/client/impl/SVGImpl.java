@@ -15,38 +15,35 @@
  */
 package org.vaadin.addon.gwtgraphics.client.impl;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.vaadin.addon.gwtgraphics.client.Group;
 import org.vaadin.addon.gwtgraphics.client.Image;
 import org.vaadin.addon.gwtgraphics.client.Line;
 import org.vaadin.addon.gwtgraphics.client.VectorObject;
 import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry;
+import org.vaadin.addon.gwtgraphics.client.impl.util.RelativePathWriter;
 import org.vaadin.addon.gwtgraphics.client.impl.util.SVGBBox;
 import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+import org.vaadin.addon.gwtgraphics.client.impl.util.TextMeasurer;
 import org.vaadin.addon.gwtgraphics.client.shape.Circle;
 import org.vaadin.addon.gwtgraphics.client.shape.Ellipse;
 import org.vaadin.addon.gwtgraphics.client.shape.Path;
 import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
 import org.vaadin.addon.gwtgraphics.client.shape.Text;
-import org.vaadin.addon.gwtgraphics.client.shape.path.Arc;
-import org.vaadin.addon.gwtgraphics.client.shape.path.ClosePath;
-import org.vaadin.addon.gwtgraphics.client.shape.path.CurveTo;
-import org.vaadin.addon.gwtgraphics.client.shape.path.LineTo;
-import org.vaadin.addon.gwtgraphics.client.shape.path.MoveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
 import org.vaadin.addon.gwtgraphics.client.shape.path.PathStep;
 
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
-import com.google.gwt.dom.client.DivElement;
-import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.NodeList;
-import com.google.gwt.dom.client.Style;
 import com.google.gwt.regexp.shared.MatchResult;
 import com.google.gwt.regexp.shared.RegExp;
-import com.google.gwt.user.client.ui.RootPanel;
 
 /**
  * This class contains the SVG implementation module of GWT Graphics.
@@ -58,6 +55,12 @@ public class SVGImpl {
 
 	// TODO: get rid of all this crap
 
+	/**
+	 * Fully initialised elements by VectorObject type, cloned by
+	 * {@link #createElement(Class)}.
+	 */
+	private final Map<Class<? extends VectorObject>, Element> prototypes = new HashMap<Class<? extends VectorObject>, Element>();
+
 	public String getRendererString() {
 		return "SVG";
 	}
@@ -80,7 +83,26 @@ public class SVGImpl {
 		return root;
 	}
 
+	/**
+	 * Creates the element for a VectorObject of the given type by cloning a
+	 * prototype, which is created on the first call for each type.
+	 */
 	public Element createElement(Class<? extends VectorObject> type) {
+		Element prototype = prototypes.get(type);
+		if (prototype == null) {
+			prototype = createPrototype(type);
+			if (prototype == null) {
+				return null;
+			}
+			prototypes.put(type, prototype);
+		}
+		return prototype.cloneNode(false).cast();
+	}
+
+	/**
+	 * Creates the prototype element for the given VectorObject type.
+	 */
+	protected Element createPrototype(Class<? extends VectorObject> type) {
 		Element element = null;
 		if (type == Rectangle.class) {
 			element = SVGUtil.createSVGElementNS("rect");
@@ -214,7 +236,7 @@ public class SVGImpl {
 	}
 
 	public void setFillOpacity(Element element, double opacity) {
-		SVGUtil.setAttributeNS(element, "fill-opacity", "" + opacity);
+		SVGUtil.setAttributeNS(element, "fill-opacity", NumberUtil.format(opacity));
 	}
 
 	public String getStrokeColor(Element element) {
@@ -240,7 +262,7 @@ public class SVGImpl {
 	}
 
 	public void setStrokeOpacity(Element element, double opacity) {
-		SVGUtil.setAttributeNS(element, "stroke-opacity", "" + opacity);
+		SVGUtil.setAttributeNS(element, "stroke-opacity", NumberUtil.format(opacity));
 	}
 
 	public int getWidth(Element element) {
@@ -290,6 +312,37 @@ public class SVGImpl {
 		SVGUtil.setAttributeNS(element, "ry", radiusY);
 	}
 
+	public void drawPath(Element element, Path path) {
+		setPathData(element, getPathData(path));
+	}
+
+	/**
+	 * Returns the path data of all steps of the given Path.
+	 */
+	public String getPathData(Path path) {
+		StringBuilder d = new StringBuilder();
+		path.appendPathData(d);
+		return d.toString();
+	}
+
+	/**
+	 * Returns the path data of the given packed steps, optionally using
+	 * relative coordinates.
+	 */
+	public String getPathData(PathData data, boolean relative) {
+		StringBuilder d = new StringBuilder();
+		if (relative) {
+			PathGeometry.visit(data, new RelativePathWriter(d));
+		} else {
+			data.appendSVG(d, 0, data.size());
+		}
+		return d.toString();
+	}
+
+	public void setPathData(Element element, String data) {
+		SVGUtil.setAttributeNS(element, "d", data);
+	}
+
 	public void drawPath(Element element, List<PathStep> steps) {
 		StringBuilder path = new StringBuilder();
 		for (PathStep step : steps) {
@@ -299,50 +352,54 @@ public class SVGImpl {
 	}
 
 	/**
-	 * Builds the string for single step Needed when appending step to the end
-	 * of path
-	 * @param element
+	 * Builds the path data of a single step, needed when appending a step to
+	 * the end of a path.
 	 *
 	 * @param step
 	 *            step which string we need
 	 * @return path step string
 	 */
-	public void getPathStepString(Element element, PathStep step) {
+	public String getPathStepString(PathStep step) {
 		StringBuilder path = new StringBuilder();
 		appendPathStep(path, step);
-		element.getAttribute("d").concat(path.toString());
+		return path.toString();
 	}
 
 	protected void appendPathStep(StringBuilder path, PathStep step) {
-		if (step instanceof Arc) {
-			Arc arc = (Arc) step;
-			path.append(arc.isRelativeCoords() ? " a" : " A");
-			path.append(arc.getRx()).append(",").append(arc.getRy());
-			path.append(" ").append(arc.getxAxisRotation());
-			path.append(" ").append(arc.isLargeArc() ? "1" : "0").append(",")
-			.append(arc.isSweep() ? "1" : "0");
-			path.append(" ").append(arc.getX()).append(",").append(arc.getY());
-		} else if (step instanceof CurveTo) {
-			CurveTo curve = (CurveTo) step;
-			path.append(curve.isRelativeCoords() ? " c" : " C");
-			path.append(curve.getX1()).append(" ").append(curve.getY1());
-			path.append(" ").append(curve.getX2()).append(" ")
-			.append(curve.getY2());
-			path.append(" ").append(curve.getX()).append(" ")
-			.append(curve.getY());
-		} else if (step instanceof LineTo) {
-			LineTo lineTo = (LineTo) step;
-			path.append(lineTo.isRelativeCoords() ? " l" : " L")
-			.append(lineTo.getX()).append(" ").append(lineTo.getY());
-		} else if (step instanceof MoveTo) {
-			MoveTo moveTo = (MoveTo) step;
-			path.append(moveTo.isRelativeCoords() ? " m" : " M")
-			.append(moveTo.getX()).append(" ").append(moveTo.getY());
-		}else if (step instanceof ClosePath) {
-			path.append(" z");
-		}
+		SVGUtil.appendPathStep(path, step);
 	}
 
+	/**
+	 * Updates the transform of the given element numerically through its
+	 * consolidated SVGMatrix, avoiding formatting and parsing a transform
+	 * string. This only succeeds if the element's transform consists of a
+	 * single matrix, which is the case after a matrix transform attribute has
+	 * been written once.
+	 *
+	 * @return true if the matrix was updated, false if the caller has to set
+	 *         the transform attribute instead
+	 */
+	public native boolean setTransformMatrix(Element element, double a,
+			double b, double c, double d, double tx, double ty) /*-{
+		var t = element.transform;
+		if (!t || !t.baseVal || t.baseVal.numberOfItems != 1) {
+			return false;
+		}
+		var item = t.baseVal.getItem(0);
+		// SVGTransform.SVG_TRANSFORM_MATRIX
+		if (item.type != 1) {
+			return false;
+		}
+		var m = item.matrix;
+		m.a = a;
+		m.b = b;
+		m.c = c;
+		m.d = d;
+		m.e = tx;
+		m.f = ty;
+		return true;
+	}-*/;
+
 	public String getText(Element element) {
 		return element.getInnerText();
 	}
@@ -407,6 +464,22 @@ public class SVGImpl {
 		root.appendChild(element);
 	}
 
+	/**
+	 * Appends the given detached elements to the root with a single DOM
+	 * insertion by collecting them in a document fragment first.
+	 */
+	public void addAll(Element root, List<Element> elements) {
+		Node fragment = createDocumentFragment();
+		for (Element element : elements) {
+			fragment.appendChild(element);
+		}
+		root.appendChild(fragment);
+	}
+
+	private static native Node createDocumentFragment() /*-{
+		return $doc.createDocumentFragment();
+	}-*/;
+
 	public void add(Element root, Element element) {
 		NodeList<Node> list = root.getChildNodes();
 		for(int i = 0; i<list.getLength(); i++ ) {
@@ -420,11 +493,22 @@ public class SVGImpl {
 
 	public void insert(Element root, Element element, int beforeIndex,
 			boolean attached) {
-		if ("defs".equals(root.getChildNodes().getItem(0).getNodeName())) {
+		Node first = root.getFirstChild();
+		if (first != null && "defs".equals(first.getNodeName())) {
 			beforeIndex++;
 		}
-		Element e = root.getChildNodes().getItem(beforeIndex).cast();
-		root.insertBefore(element, e);
+		root.insertBefore(element, root.getChildNodes().getItem(beforeIndex));
+	}
+
+	/**
+	 * Inserts the element before the given child of the root, or appends it
+	 * if the reference is null. Unlike
+	 * {@link #insert(Element, Element, int, boolean)} this does not need to
+	 * look up the position in the child node list.
+	 */
+	public void insertBefore(Element root, Element element, Element reference,
+			boolean attached) {
+		root.insertBefore(element, reference);
 	}
 
 	public void remove(Element root, Element element) {
@@ -435,16 +519,33 @@ public class SVGImpl {
 		root.appendChild(element);
 	}
 
+	/**
+	 * Removes all children of the given element except the definitions with
+	 * a single DOM operation.
+	 */
 	public void clear(Element root) {
-		while (root.hasChildNodes()) {
-			root.removeChild(root.getLastChild());
+		Node first = root.getFirstChild();
+		clearContent(root);
+		if (first != null && "defs".equals(first.getNodeName())) {
+			root.appendChild(first);
 		}
 	}
 
+	private static native void clearContent(Element element) /*-{
+		element.textContent = "";
+	}-*/;
+
 	public void setStyleName(Element element, String name) {
 		SVGUtil.setClassName(element, name + "-" + getStyleSuffix());
 	}
 
+	/**
+	 * Removes the style name set by {@link #setStyleName(Element, String)}.
+	 */
+	public void clearStyleName(Element element) {
+		SVGUtil.setClassName(element, "");
+	}
+
 	public void setRotation(final Element element, final int degree,
 			final boolean attached) {
 		element.setPropertyInt("_rotation", degree);
@@ -461,11 +562,60 @@ public class SVGImpl {
 
 	protected void setRotateTransform(Element element, int degree,
 			boolean attached) {
-		SVGBBox box = SVGUtil.getBBBox(element, attached);
-		int x = box.getX() + box.getWidth() / 2;
-		int y = box.getY() + box.getHeight() / 2;
-		SVGUtil.setAttributeNS(element, "transform", "rotate(" + degree + " "
-				+ x + " " + y + ")");
+		int x, y;
+		double[] bounds = getGeometryBounds(element);
+		if (bounds != null) {
+			x = (int) Math.round((bounds[0] + bounds[2]) / 2);
+			y = (int) Math.round((bounds[1] + bounds[3]) / 2);
+		} else {
+			SVGBBox box = SVGUtil.getBBBox(element, attached);
+			x = box.getX() + box.getWidth() / 2;
+			y = box.getY() + box.getHeight() / 2;
+		}
+		SVGUtil.setAttributeNS(element, "transform", "rotate(" + NumberUtil.format(degree)
+				+ " " + NumberUtil.format(x) + " " + NumberUtil.format(y) + ")");
+	}
+
+	/**
+	 * Computes the bounds of basic shapes from their geometry attributes, so
+	 * that no layout is needed.
+	 *
+	 * @return <code>{minX, minY, maxX, maxY}</code> or null if the element
+	 *         has to be measured by the browser
+	 */
+	protected double[] getGeometryBounds(Element element) {
+		String tag = element.getTagName().toLowerCase();
+		if ("rect".equals(tag) || "image".equals(tag)) {
+			double x = attr(element, "x");
+			double y = attr(element, "y");
+			return new double[] { x, y, x + attr(element, "width"),
+					y + attr(element, "height") };
+		} else if ("circle".equals(tag)) {
+			double r = attr(element, "r");
+			return ellipseBounds(element, r, r);
+		} else if ("ellipse".equals(tag)) {
+			return ellipseBounds(element, attr(element, "rx"),
+					attr(element, "ry"));
+		} else if ("line".equals(tag)) {
+			double x1 = attr(element, "x1");
+			double y1 = attr(element, "y1");
+			double x2 = attr(element, "x2");
+			double y2 = attr(element, "y2");
+			return new double[] { Math.min(x1, x2), Math.min(y1, y2),
+					Math.max(x1, x2), Math.max(y1, y2) };
+		}
+		return null;
+	}
+
+	private static double[] ellipseBounds(Element element, double rx,
+			double ry) {
+		double cx = attr(element, "cx");
+		double cy = attr(element, "cy");
+		return new double[] { cx - rx, cy - ry, cx + rx, cy + ry };
+	}
+
+	private static double attr(Element element, String name) {
+		return NumberUtil.parseDoubleValue(element.getAttribute(name), 0);
 	}
 
 	public int getRotation(Element element) {
@@ -490,24 +640,11 @@ public class SVGImpl {
 		if (text == null || "".equals(text)) {
 			return 0;
 		}
-
-		DivElement measureElement = Document.get().createDivElement();
-		Style style = measureElement.getStyle();
-		style.setProperty("visibility", "hidden");
-		style.setProperty("display", "inline");
-		style.setProperty("whiteSpace", "nowrap");
-		style.setProperty("fontFamily", getTextFontFamily(element));
-		style.setPropertyPx("fontSize", getTextFontSize(element));
-		measureElement.setInnerText(text);
-		RootPanel.getBodyElement().appendChild(measureElement);
-		int measurement;
+		String family = getTextFontFamily(element);
+		int size = getTextFontSize(element);
 		if (measureWidth) {
-			measurement = measureElement.getOffsetWidth();
-		} else {
-			measurement = measureElement.getOffsetHeight();
+			return TextMeasurer.get().getWidth(text, family, size);
 		}
-		RootPanel.getBodyElement().removeChild(measureElement);
-
-		return measurement;
+		return TextMeasurer.get().getHeight(family, size);
 	}
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl;
+
+import java.util.Collection;
+import java.util.Map.Entry;
+
+import org.vaadin.addon.gwtgraphics.client.Definition;
+import org.vaadin.addon.gwtgraphics.client.DrawingArea;
+import org.vaadin.addon.gwtgraphics.client.Group;
+import org.vaadin.addon.gwtgraphics.client.Image;
+import org.vaadin.addon.gwtgraphics.client.Line;
+import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.VectorObjectContainer;
+import org.vaadin.addon.gwtgraphics.client.filter.Filter;
+import org.vaadin.addon.gwtgraphics.client.filter.FilterEffect;
+import org.vaadin.addon.gwtgraphics.client.gradient.Gradient;
+import org.vaadin.addon.gwtgraphics.client.gradient.GradientStop;
+import org.vaadin.addon.gwtgraphics.client.gradient.LinearGradient;
+import org.vaadin.addon.gwtgraphics.client.gradient.RadialGradient;
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+import org.vaadin.addon.gwtgraphics.client.shape.Circle;
+import org.vaadin.addon.gwtgraphics.client.shape.Ellipse;
+import org.vaadin.addon.gwtgraphics.client.shape.Path;
+import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
+import org.vaadin.addon.gwtgraphics.client.shape.Text;
+
+/**
+ * Serializes a VectorObject tree to SVG markup without touching the DOM. The
+ * output mirrors the elements and attributes SVGImpl creates, so the same
+ * scene can be rendered in the browser or written as a standalone SVG
+ * document.
+ * <p>
+ * VectorObjects can be created on a plain JVM when <code>GWT.create()</code>
+ * returns null, for example after <code>GWTMockUtilities.disarm()</code>.
+ * They then have no element and are built into Groups, which can be
+ * serialized with {@link #writeDocument(VectorObjectContainer, int, int, Collection)}.
+ * </p>
+ *
+ * <pre>
+ * Group chart = new Group();
+ * chart.add(new Rectangle(10, 10, 100, 50));
+ * String svg = new SVGSerializer().writeDocument(chart, 200, 100, null).toString();
+ * </pre>
+ */
+public class SVGSerializer extends SceneRenderer {
+
+	protected final StringBuilder out;
+
+	/**
+	 * Creates a serializer writing to a new buffer.
+	 */
+	public SVGSerializer() {
+		this(new StringBuilder());
+	}
+
+	/**
+	 * Creates a serializer appending to the given buffer. The buffer can be
+	 * drained between objects to stream large scenes.
+	 *
+	 * @param out
+	 *            the buffer to append to
+	 */
+	public SVGSerializer(StringBuilder out) {
+		this.out = out;
+	}
+
+	/**
+	 * Returns the SVG document of the given DrawingArea, including its
+	 * definitions.
+	 *
+	 * @param area
+	 *            the DrawingArea to serialize
+	 * @return SVG markup
+	 */
+	public static String toSVG(DrawingArea area) {
+		return new SVGSerializer().writeDocument(area, area.getWidth(),
+				area.getHeight(), area.getDefinitions()).toString();
+	}
+
+	/**
+	 * Writes a complete SVG document containing the children of the given
+	 * container.
+	 *
+	 * @param container
+	 *            the container whose children are written
+	 * @param width
+	 *            the width of the document in pixels
+	 * @param height
+	 *            the height of the document in pixels
+	 * @param definitions
+	 *            gradients and filters referenced by the scene, or null
+	 * @return this serializer
+	 */
+	public SVGSerializer writeDocument(VectorObjectContainer container,
+			int width, int height, Collection<? extends Definition> definitions) {
+		out.append("<svg");
+		SVGUtil.appendAttribute(out, "xmlns", SVGUtil.SVG_NS);
+		SVGUtil.appendAttribute(out, "xmlns:xlink", SVGUtil.XLINK_NS);
+		SVGUtil.appendAttribute(out, "overflow", "hidden");
+		SVGUtil.appendAttribute(out, "width", NumberUtil.format(width));
+		SVGUtil.appendAttribute(out, "height", NumberUtil.format(height));
+		out.append("><defs>");
+		if (definitions != null) {
+			for (Definition def : definitions) {
+				writeDefinition(def);
+			}
+		}
+		out.append("</defs>");
+		renderChildren(container);
+		out.append("</svg>");
+		return this;
+	}
+
+	/**
+	 * Writes a gradient or a filter. Other definitions are skipped.
+	 *
+	 * @param def
+	 *            the definition to write
+	 */
+	public void writeDefinition(Definition def) {
+		if (def instanceof LinearGradient) {
+			LinearGradient g = (LinearGradient) def;
+			out.append("<linearGradient");
+			SVGUtil.appendAttribute(out, "x1", NumberUtil.format(g.getStartX()));
+			SVGUtil.appendAttribute(out, "y1", NumberUtil.format(g.getStartY()));
+			SVGUtil.appendAttribute(out, "x2", NumberUtil.format(g.getEndX()));
+			SVGUtil.appendAttribute(out, "y2", NumberUtil.format(g.getEndY()));
+			writeStops(g);
+			out.append("</linearGradient>");
+		} else if (def instanceof RadialGradient) {
+			RadialGradient g = (RadialGradient) def;
+			out.append("<radialGradient");
+			SVGUtil.appendAttribute(out, "radius", NumberUtil.format(g.getRadius()));
+			SVGUtil.appendAttribute(out, "cx", NumberUtil.format(g.getCx()));
+			SVGUtil.appendAttribute(out, "cy", NumberUtil.format(g.getCy()));
+			SVGUtil.appendAttribute(out, "fx", NumberUtil.format(g.getFx()));
+			SVGUtil.appendAttribute(out, "fy", NumberUtil.format(g.getFy()));
+			writeStops(g);
+			out.append("</radialGradient>");
+		} else if (def instanceof Filter) {
+			Filter filter = (Filter) def;
+			out.append("<filter");
+			SVGUtil.appendAttribute(out, "id", filter.getId());
+			for (Entry<String, String> entry : filter.getParameters().entrySet()) {
+				SVGUtil.appendAttribute(out, entry.getKey(), entry.getValue());
+			}
+			out.append('>');
+			for (FilterEffect effect : filter.getEffects()) {
+				out.append('<').append(effect.getTag());
+				SVGUtil.appendAttribute(out, "in", effect.getInputSource().getSource());
+				for (Entry<String, String> entry : effect.getParameters().entrySet()) {
+					SVGUtil.appendAttribute(out, entry.getKey(), entry.getValue());
+				}
+				out.append("/>");
+			}
+			out.append("</filter>");
+		}
+	}
+
+	private void writeStops(Gradient g) {
+		SVGUtil.appendAttribute(out, "id", g.getId());
+		out.append('>');
+		for (GradientStop stop : g.getStops()) {
+			out.append("<stop");
+			SVGUtil.appendAttribute(out, "offset", NumberUtil.format(stop.getOffset()));
+			SVGUtil.appendAttribute(out, "stop-color", stop.getColor());
+			SVGUtil.appendAttribute(out, "stop-opacity", NumberUtil.format(stop.getOpacity()));
+			out.append("/>");
+		}
+	}
+
+	/**
+	 * Writes the start tag of the given object up to its common attributes,
+	 * leaving the tag open for type specific attributes.
+	 */
+	protected void openTag(VectorObject vo) {
+		out.append('<').append(vo.getSVGElementName());
+		vo.appendSVGAttributes(out);
+	}
+
+	@Override
+	protected void renderGroup(Group group) {
+		openTag(group);
+		out.append('>');
+		renderChildren(group);
+		out.append("</g>");
+	}
+
+	@Override
+	protected void renderRectangle(Rectangle rectangle) {
+		openTag(rectangle);
+		if (rectangle.getRoundedCorners() > 0) {
+			SVGUtil.appendAttribute(out, "rx", NumberUtil.format(rectangle.getRoundedCorners()));
+			SVGUtil.appendAttribute(out, "ry", NumberUtil.format(rectangle.getRoundedCorners()));
+		}
+		out.append("/>");
+	}
+
+	@Override
+	protected void renderCircle(Circle circle) {
+		openTag(circle);
+		out.append("/>");
+	}
+
+	@Override
+	protected void renderEllipse(Ellipse ellipse) {
+		openTag(ellipse);
+		out.append("/>");
+	}
+
+	@Override
+	protected void renderPath(Path path) {
+		openTag(path);
+		StringBuilder d = new StringBuilder();
+		path.appendPathData(d);
+		SVGUtil.appendAttribute(out, "d", d.toString());
+		out.append("/>");
+	}
+
+	@Override
+	protected void renderText(Text text) {
+		openTag(text);
+		SVGUtil.appendAttribute(out, "text-anchor", "start");
+		if (text.getFontFamily() != null) {
+			SVGUtil.appendAttribute(out, "font-family", text.getFontFamily());
+		}
+		SVGUtil.appendAttribute(out, "font-size", NumberUtil.format(text.getFontSize()));
+		out.append('>');
+		if (text.getText() != null) {
+			SVGUtil.appendEscaped(out, text.getText(), false);
+		}
+		out.append("</text>");
+	}
+
+	@Override
+	protected void renderImage(Image image) {
+		openTag(image);
+		SVGUtil.appendAttribute(out, "preserveAspectRatio", "none");
+		out.append("/>");
+	}
+
+	@Override
+	protected void renderLine(Line line) {
+		openTag(line);
+		out.append("/>");
+	}
+
+	/**
+	 * Returns the buffer this serializer appends to.
+	 *
+	 * @return the output buffer
+	 */
+	public StringBuilder getOutput() {
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl;
+
+import org.vaadin.addon.gwtgraphics.client.Group;
+import org.vaadin.addon.gwtgraphics.client.Image;
+import org.vaadin.addon.gwtgraphics.client.Line;
+import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.VectorObjectContainer;
+import org.vaadin.addon.gwtgraphics.client.shape.Circle;
+import org.vaadin.addon.gwtgraphics.client.shape.Ellipse;
+import org.vaadin.addon.gwtgraphics.client.shape.Path;
+import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
+import org.vaadin.addon.gwtgraphics.client.shape.Text;
+
+/**
+ * Base class for renderers that draw a VectorObject tree from its model
+ * instead of maintaining DOM elements. The tree is walked in document order
+ * and each object is dispatched to the method for its type.
+ */
+public abstract class SceneRenderer {
+
+	/**
+	 * Renders the children of the given container in order.
+	 *
+	 * @param container
+	 *            a DrawingArea or a Group
+	 */
+	public void renderChildren(VectorObjectContainer container) {
+		for (int i = 0; i < container.getVectorObjectCount(); i++) {
+			render(container.getVectorObject(i));
+		}
+	}
+
+	/**
+	 * Renders a single VectorObject, including the children of a Group.
+	 *
+	 * @param vo
+	 *            the object to render
+	 */
+	public void render(VectorObject vo) {
+		if (vo instanceof Group) {
+			renderGroup((Group) vo);
+		} else if (vo instanceof Rectangle) {
+			renderRectangle((Rectangle) vo);
+		} else if (vo instanceof Circle) {
+			renderCircle((Circle) vo);
+		} else if (vo instanceof Ellipse) {
+			renderEllipse((Ellipse) vo);
+		} else if (vo instanceof Path) {
+			renderPath((Path) vo);
+		} else if (vo instanceof Text) {
+			renderText((Text) vo);
+		} else if (vo instanceof Image) {
+			renderImage((Image) vo);
+		} else if (vo instanceof Line) {
+			renderLine((Line) vo);
+		}
+	}
+
+	protected abstract void renderGroup(Group group);
+
+	protected abstract void renderRectangle(Rectangle rectangle);
+
+	protected abstract void renderCircle(Circle circle);
+
+	protected abstract void renderEllipse(Ellipse ellipse);
+
+	protected abstract void renderPath(Path path);
+
+	protected abstract void renderText(Text text);
+
+	protected abstract void renderImage(Image image);
+
+	protected abstract void renderLine(Line line);
+
+}
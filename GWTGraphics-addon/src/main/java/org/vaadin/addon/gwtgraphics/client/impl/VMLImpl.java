@@ -33,6 +33,7 @@ import org.vaadin.addon.gwtgraphics.client.shape.path.ClosePath;
 import org.vaadin.addon.gwtgraphics.client.shape.path.CurveTo;
 import org.vaadin.addon.gwtgraphics.client.shape.path.LineTo;
 import org.vaadin.addon.gwtgraphics.client.shape.path.MoveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
 import org.vaadin.addon.gwtgraphics.client.shape.path.PathStep;
 
 import com.google.gwt.core.client.Scheduler;
@@ -197,7 +198,7 @@ public class VMLImpl extends SVGImpl {
 	@Override
 	public void setFillOpacity(Element element, double opacity) {
 		VMLUtil.getOrCreateChildElementWithTagName(element, "fill")
-		.setPropertyString("opacity", "" + opacity);
+		.setPropertyString("opacity", NumberUtil.format(opacity));
 		element.setPropertyDouble("_fill-opacity", opacity);
 	}
 
@@ -241,7 +242,7 @@ public class VMLImpl extends SVGImpl {
 	@Override
 	public void setStrokeOpacity(Element element, double opacity) {
 		VMLUtil.getOrCreateChildElementWithTagName(element, "stroke")
-		.setPropertyString("opacity", "" + opacity);
+		.setPropertyString("opacity", NumberUtil.format(opacity));
 		element.setPropertyDouble("_stroke-opacity", opacity);
 	}
 
@@ -319,6 +320,29 @@ public class VMLImpl extends SVGImpl {
 		setY(element, getY(element), false);
 	}
 
+	@Override
+	public String getPathData(Path path) {
+		StringBuilder data = new StringBuilder();
+		for (PathStep step : path.getSteps()) {
+			appendPathStep(data, step);
+		}
+		return data.toString();
+	}
+
+	@Override
+	public String getPathData(PathData data, boolean relative) {
+		StringBuilder d = new StringBuilder();
+		for (PathStep step : data.asList()) {
+			appendPathStep(d, step);
+		}
+		return d.toString();
+	}
+
+	@Override
+	public void setPathData(Element element, String data) {
+		element.setAttribute("path", data);
+	}
+
 	@Override
 	public void drawPath(Element element, List<PathStep> steps) {
 		StringBuilder path = new StringBuilder();
@@ -338,15 +362,6 @@ public class VMLImpl extends SVGImpl {
 		element.setAttribute("path", path.toString());
 	}
 
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public void getPathStepString(Element element, PathStep step) {
-		StringBuilder path = new StringBuilder();
-		appendPathStep(path, step);
-		element.getAttribute("path").concat(path.toString());
-	}
 
 	@Override
 	protected void appendPathStep(StringBuilder path, PathStep step) {
@@ -576,11 +591,25 @@ public class VMLImpl extends SVGImpl {
 		}
 	}
 
+	@Override
+	public void addAll(Element root, List<Element> elements) {
+		// VML elements need fixing up one by one after insertion
+		for (Element element : elements) {
+			add(root, element, false);
+		}
+	}
+
 	@Override
 	public void insert(Element root, Element element, int beforeIndex,
 			boolean attached) {
 		Element e = root.getChildNodes().getItem(beforeIndex).cast();
-		root.insertBefore(element, e);
+		insertBefore(root, element, e, attached);
+	}
+
+	@Override
+	public void insertBefore(Element root, Element element, Element reference,
+			boolean attached) {
+		root.insertBefore(element, reference);
 		applyFillAndStroke(element, attached);
 		if (isTextElement(element)) {
 			fixTextPosition(element, attached);
@@ -611,9 +640,7 @@ public class VMLImpl extends SVGImpl {
 
 	@Override
 	public void clear(Element root) {
-		while (root.hasChildNodes()) {
-			root.removeChild(root.getLastChild());
-		}
+		root.setInnerHTML("");
 	}
 
 	@Override
@@ -622,6 +649,11 @@ public class VMLImpl extends SVGImpl {
 				+ getStyleSuffix());
 	}
 
+	@Override
+	public void clearStyleName(Element element) {
+		element.setClassName(VMLUtil.VML_ELEMENT_CLASSNAME);
+	}
+
 	@Override
 	public void setRotation(Element element, int degree, boolean attached) {
 		element.getStyle().setPropertyPx("rotation", degree);
@@ -633,6 +665,12 @@ public class VMLImpl extends SVGImpl {
 				element.getStyle().getProperty("rotation"), 0);
 	}
 
+	@Override
+	public boolean setTransformMatrix(Element element, double a, double b,
+			double c, double d, double tx, double ty) {
+		return false;
+	}
+
 	@Override
 	public void onAttach(Element element, boolean attached) {
 		if (isTextElement(element)) {
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import java.util.List;
+
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathStep;
+
+/**
+ * A path approximated by polylines, one per sub-path. Curves and arcs are
+ * subdivided so that the polyline stays within a given distance of the
+ * exact geometry.
+ */
+public class FlattenedPath {
+
+	/**
+	 * Upper limit for the number of segments a single curve or arc is
+	 * divided into.
+	 */
+	protected static final int MAX_SEGMENTS = 64;
+
+	/**
+	 * Alternating x and y coordinates of all points.
+	 */
+	protected double[] points = new double[32];
+	protected int size;
+
+	/**
+	 * Index of the first point of each sub-path in {@link #points}.
+	 */
+	protected int[] starts = new int[4];
+	protected boolean[] closed = new boolean[4];
+	protected int subpaths;
+
+	protected final double tolerance;
+
+	/**
+	 * Flattens the given path steps.
+	 *
+	 * @param steps
+	 *            the path steps
+	 * @param tolerance
+	 *            maximum distance between the polylines and the exact
+	 *            geometry
+	 * @return the flattened path
+	 */
+	public static FlattenedPath flatten(List<PathStep> steps, double tolerance) {
+		FlattenedPath f = new FlattenedPath(tolerance);
+		PathGeometry.visit(steps, f.builder());
+		return f;
+	}
+
+	/**
+	 * Flattens the given path data, see {@link #flatten(List, double)}.
+	 */
+	public static FlattenedPath flatten(PathData data, double tolerance) {
+		FlattenedPath f = new FlattenedPath(tolerance);
+		PathGeometry.visit(data, f.builder());
+		return f;
+	}
+
+	private PathVisitor builder() {
+		final FlattenedPath f = this;
+		return new PathVisitor() {
+			@Override
+			public void moveTo(double x, double y) {
+				f.startSubpath(x, y);
+			}
+
+			@Override
+			public void lineTo(double x0, double y0, double x, double y) {
+				f.add(x, y);
+			}
+
+			@Override
+			public void curveTo(double x0, double y0, double x1, double y1,
+					double x2, double y2, double x, double y) {
+				f.addCurve(x0, y0, x1, y1, x2, y2, x, y);
+			}
+
+			@Override
+			public void ellipticArc(double[] c, double x, double y) {
+				f.addArc(c, x, y);
+			}
+
+			@Override
+			public void close(double x0, double y0, double startX,
+					double startY) {
+				if (f.subpaths > 0) {
+					f.closed[f.subpaths - 1] = true;
+				}
+			}
+		};
+	}
+
+	protected FlattenedPath(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	protected void startSubpath(double x, double y) {
+		if (subpaths == starts.length) {
+			int[] s = new int[subpaths * 2];
+			boolean[] c = new boolean[subpaths * 2];
+			System.arraycopy(starts, 0, s, 0, subpaths);
+			System.arraycopy(closed, 0, c, 0, subpaths);
+			starts = s;
+			closed = c;
+		}
+		starts[subpaths] = size;
+		closed[subpaths] = false;
+		subpaths++;
+		add(x, y);
+	}
+
+	protected void add(double x, double y) {
+		if (size + 2 > points.length) {
+			double[] p = new double[points.length * 2];
+			System.arraycopy(points, 0, p, 0, size);
+			points = p;
+		}
+		points[size++] = x;
+		points[size++] = y;
+	}
+
+	protected void addCurve(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x3, double y3) {
+		double length = Math.hypot(x1 - x0, y1 - y0)
+				+ Math.hypot(x2 - x1, y2 - y1) + Math.hypot(x3 - x2, y3 - y2);
+		int n = segments(Math.sqrt(length / tolerance));
+		for (int i = 1; i <= n; i++) {
+			double t = (double) i / n;
+			double u = 1 - t;
+			double a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t, d = t
+					* t * t;
+			add(a * x0 + b * x1 + c * x2 + d * x3, a * y0 + b * y1 + c * y2
+					+ d * y3);
+		}
+	}
+
+	protected void addArc(double[] c, double x, double y) {
+		double r = Math.max(c[2], c[3]);
+		double step = r > tolerance ? 2 * Math.acos(1 - tolerance / r)
+				: Math.PI / 2;
+		int n = segments(Math.abs(c[6]) / step);
+		double cos = Math.cos(c[4]);
+		double sin = Math.sin(c[4]);
+		for (int i = 1; i < n; i++) {
+			double t = c[5] + c[6] * i / n;
+			double ex = c[2] * Math.cos(t);
+			double ey = c[3] * Math.sin(t);
+			add(c[0] + ex * cos - ey * sin, c[1] + ex * sin + ey * cos);
+		}
+		// the exact end point avoids accumulating rounding errors
+		add(x, y);
+	}
+
+	private static int segments(double n) {
+		return Math.max(1, Math.min(MAX_SEGMENTS, (int) Math.ceil(n)));
+	}
+
+	private int end(int subpath) {
+		return subpath + 1 < subpaths ? starts[subpath + 1] : size;
+	}
+
+	/**
+	 * Returns true if the point is inside the area the path encloses. Open
+	 * sub-paths are treated as closed, as they are when filled.
+	 *
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @param evenOdd
+	 *            true for the evenodd fill rule, false for nonzero
+	 * @return true if the point is inside
+	 */
+	public boolean contains(double x, double y, boolean evenOdd) {
+		int winding = 0;
+		int crossings = 0;
+		for (int s = 0; s < subpaths; s++) {
+			int start = starts[s];
+			int end = end(s);
+			if (end - start < 6) {
+				continue;
+			}
+			for (int i = start; i < end; i += 2) {
+				double x1 = points[i];
+				double y1 = points[i + 1];
+				int j = i + 2 < end ? i + 2 : start;
+				double x2 = points[j];
+				double y2 = points[j + 1];
+				if (y1 <= y) {
+					if (y2 > y) {
+						double side = (x2 - x1) * (y - y1) - (x - x1) * (y2 - y1);
+						if (side > 0) {
+							winding++;
+						}
+						if (side != 0) {
+							crossings++;
+						}
+					}
+				} else if (y2 <= y) {
+					double side = (x2 - x1) * (y - y1) - (x - x1) * (y2 - y1);
+					if (side < 0) {
+						winding--;
+					}
+					if (side != 0) {
+						crossings++;
+					}
+				}
+			}
+		}
+		return evenOdd ? (crossings & 1) != 0 : winding != 0;
+	}
+
+	/**
+	 * Returns true if the point is within the given distance of the
+	 * polylines, including the closing segment of closed sub-paths.
+	 *
+	 * @param x
+	 *            x-coordinate
+	 * @param y
+	 *            y-coordinate
+	 * @param distance
+	 *            maximum distance
+	 * @return true if the point is near the outline
+	 */
+	public boolean isNearOutline(double x, double y, double distance) {
+		double d2 = distance * distance;
+		for (int s = 0; s < subpaths; s++) {
+			int start = starts[s];
+			int end = end(s);
+			if (end - start == 2) {
+				double dx = x - points[start];
+				double dy = y - points[start + 1];
+				if (dx * dx + dy * dy <= d2) {
+					return true;
+				}
+				continue;
+			}
+			for (int i = start; i + 2 < end; i += 2) {
+				if (PathGeometry.distanceSquared(x, y, points[i],
+						points[i + 1], points[i + 2], points[i + 3]) <= d2) {
+					return true;
+				}
+			}
+			if (closed[s]
+					&& PathGeometry.distanceSquared(x, y, points[end - 2],
+							points[end - 1], points[start], points[start + 1]) <= d2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of points in all polylines.
+	 */
+	public int getPointCount() {
+		return size / 2;
+	}
+
+}
@@ -18,13 +18,113 @@ package org.vaadin.addon.gwtgraphics.client.impl.util;
 import com.google.gwt.dom.client.Element;
 
 /**
- * This util class contains some static helpers for number parsing.
+ * This util class contains some static helpers for number parsing and
+ * formatting.
  * 
  * @author Henri Kerola
  * 
  */
 public abstract class NumberUtil {
 
+	/**
+	 * Number of decimals written by {@link #format(double)}.
+	 */
+	private static int precision = 3;
+	private static long scale = 1000;
+	private static final int MAX_PRECISION = 9;
+
+	/**
+	 * Sets the number of decimals used when numbers are written to the DOM,
+	 * for example to path data and transforms. The default is 3, which is
+	 * well below a pixel on any screen.
+	 *
+	 * @param decimals
+	 *            the number of decimals, from 0 to 9
+	 */
+	public static void setPrecision(int decimals) {
+		if (decimals < 0 || decimals > MAX_PRECISION) {
+			throw new IllegalArgumentException("Precision must be between 0 and "
+					+ MAX_PRECISION);
+		}
+		precision = decimals;
+		scale = 1;
+		for (int i = 0; i < decimals; i++) {
+			scale *= 10;
+		}
+	}
+
+	public static int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Rounds the given value to the precision used for formatting.
+	 */
+	public static double round(double value) {
+		double scaled = value * scale;
+		if (Math.abs(scaled) >= Long.MAX_VALUE / 2 || Double.isNaN(scaled)) {
+			return value;
+		}
+		return Math.round(scaled) / (double) scale;
+	}
+
+	/**
+	 * Formats the given value with the current precision, without trailing
+	 * zeros or exponent notation: <code>100.00000000000001</code> is written
+	 * as <code>100</code> and <code>1.0E-4</code> as <code>0</code>.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the formatted value
+	 */
+	public static String format(double value) {
+		double scaled = value * scale;
+		if (scaled == (int) scaled) {
+			// common case of whole numbers
+			if (scale == 1 || (int) scaled % scale == 0) {
+				return Integer.toString((int) (scaled / scale));
+			}
+		}
+		return append(new StringBuilder(12), value).toString();
+	}
+
+	/**
+	 * Appends the given value formatted as in {@link #format(double)}.
+	 *
+	 * @param out
+	 *            the string being built
+	 * @param value
+	 *            the value
+	 * @return the given StringBuilder
+	 */
+	public static StringBuilder append(StringBuilder out, double value) {
+		double scaled = value * scale;
+		if (Math.abs(scaled) >= Long.MAX_VALUE / 2 || Double.isNaN(scaled)) {
+			return out.append(value);
+		}
+		long r = Math.round(scaled);
+		if (r < 0) {
+			out.append('-');
+			r = -r;
+		}
+		out.append(r / scale);
+		long fraction = r % scale;
+		if (fraction != 0) {
+			out.append('.');
+			int digits = precision;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				digits--;
+			}
+			String f = Long.toString(fraction);
+			for (int i = f.length(); i < digits; i++) {
+				out.append('0');
+			}
+			out.append(f);
+		}
+		return out;
+	}
+
 	public static int parseIntValue(Element element, String attr, int defaultVal) {
 		return parseIntValue(element.getAttribute(attr), defaultVal);
 	}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import org.vaadin.addon.gwtgraphics.client.Bounds;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+import org.vaadin.addon.gwtgraphics.client.shape.Path;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+
+/**
+ * Clips the outline of a path to a rectangle. Line segments are clipped
+ * with the Liang-Barsky algorithm. Curves and arcs are kept whole if their
+ * bounds intersect the rectangle and dropped otherwise. The parts outside
+ * the rectangle are replaced by moves, so the result is only suitable for
+ * stroking, not for filling.
+ */
+public class PathClipper extends PathVisitor {
+
+	private final PathData result;
+	private final double minX, minY, maxX, maxY;
+
+	/**
+	 * The point where the pen of the result is, if any.
+	 */
+	private double penX, penY;
+	private boolean penValid;
+
+	/**
+	 * True if the current sub-path has been copied without changes, so that
+	 * it can be closed as in the original.
+	 */
+	private boolean intact;
+
+	/**
+	 * Returns the outline of the given path clipped to the given rectangle,
+	 * using absolute coordinates.
+	 *
+	 * @param path
+	 *            the path to clip
+	 * @param clip
+	 *            the rectangle in the coordinates of the path
+	 * @return the clipped path data
+	 */
+	public static PathData clip(Path path, Bounds clip) {
+		PathClipper clipper = new PathClipper(clip);
+		path.visit(clipper);
+		return clipper.result;
+	}
+
+	/**
+	 * Returns the outline of the given path data clipped to the given
+	 * rectangle, using absolute coordinates.
+	 */
+	public static PathData clip(PathData data, Bounds clip) {
+		PathClipper clipper = new PathClipper(clip);
+		PathGeometry.visit(data, clipper);
+		return clipper.result;
+	}
+
+	protected PathClipper(Bounds clip) {
+		minX = clip.getMinX();
+		minY = clip.getMinY();
+		maxX = clip.getMaxX();
+		maxY = clip.getMaxY();
+		result = new PathData(16);
+	}
+
+	@Override
+	public void moveTo(double x, double y) {
+		penValid = false;
+		intact = true;
+		if (inside(x, y)) {
+			moveIfNeeded(x, y);
+		} else {
+			intact = false;
+		}
+	}
+
+	@Override
+	public void lineTo(double x0, double y0, double x, double y) {
+		double dx = x - x0;
+		double dy = y - y0;
+		double[] t = { 0, 1 };
+		if (clipT(-dx, x0 - minX, t) && clipT(dx, maxX - x0, t)
+				&& clipT(-dy, y0 - minY, t) && clipT(dy, maxY - y0, t)) {
+			if (t[0] > 0 || t[1] < 1) {
+				intact = false;
+			}
+			moveIfNeeded(x0 + t[0] * dx, y0 + t[0] * dy);
+			double ex = x0 + t[1] * dx;
+			double ey = y0 + t[1] * dy;
+			result.lineTo(false, ex, ey);
+			penX = ex;
+			penY = ey;
+		} else {
+			intact = false;
+		}
+	}
+
+	/**
+	 * One step of Liang-Barsky: narrows the parameter range
+	 * <code>t</code> by the edge with the given <code>p</code> and
+	 * <code>q</code>.
+	 *
+	 * @return false if the segment is completely outside the edge
+	 */
+	private static boolean clipT(double p, double q, double[] t) {
+		if (p == 0) {
+			return q >= 0;
+		}
+		double r = q / p;
+		if (p < 0) {
+			if (r > t[1]) {
+				return false;
+			}
+			if (r > t[0]) {
+				t[0] = r;
+			}
+		} else {
+			if (r < t[0]) {
+				return false;
+			}
+			if (r < t[1]) {
+				t[1] = r;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void curveTo(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x, double y) {
+		// the curve is inside the hull of its control points
+		if (intersects(Math.min(Math.min(x0, x1), Math.min(x2, x)),
+				Math.min(Math.min(y0, y1), Math.min(y2, y)),
+				Math.max(Math.max(x0, x1), Math.max(x2, x)),
+				Math.max(Math.max(y0, y1), Math.max(y2, y)))) {
+			moveIfNeeded(x0, y0);
+			result.curveTo(false, x1, y1, x2, y2, x, y);
+			penX = x;
+			penY = y;
+		} else {
+			intact = false;
+		}
+	}
+
+	@Override
+	public void arcTo(double x0, double y0, double rx, double ry,
+			double xAxisRotation, boolean largeArc, boolean sweep, double x,
+			double y) {
+		double[] c = PathGeometry.arcToCenter(x0, y0, rx, ry, xAxisRotation,
+				largeArc, sweep, x, y);
+		if (c == null) {
+			lineTo(x0, y0, x, y);
+			return;
+		}
+		// the arc is inside the circle around the whole ellipse
+		double r = Math.max(c[2], c[3]);
+		if (intersects(c[0] - r, c[1] - r, c[0] + r, c[1] + r)) {
+			moveIfNeeded(x0, y0);
+			result.arcTo(false, rx, ry, xAxisRotation, largeArc, sweep, x, y);
+			penX = x;
+			penY = y;
+		} else {
+			intact = false;
+		}
+	}
+
+	@Override
+	public void ellipticArc(double[] center, double x, double y) {
+		// arcs are handled in arcTo
+	}
+
+	@Override
+	public void close(double x0, double y0, double startX, double startY) {
+		if (intact && penValid) {
+			result.close();
+			penX = startX;
+			penY = startY;
+		} else {
+			lineTo(x0, y0, startX, startY);
+		}
+	}
+
+	private boolean inside(double x, double y) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	private boolean intersects(double x1, double y1, double x2, double y2) {
+		return x1 <= maxX && x2 >= minX && y1 <= maxY && y2 >= minY;
+	}
+
+	/**
+	 * Moves the pen of the result to the given point unless it is already
+	 * there.
+	 */
+	private void moveIfNeeded(double x, double y) {
+		if (!penValid || penX != x || penY != y) {
+			if (penValid) {
+				intact = false;
+			}
+			result.moveTo(false, x, y);
+			penX = x;
+			penY = y;
+			penValid = true;
+		}
+	}
+}
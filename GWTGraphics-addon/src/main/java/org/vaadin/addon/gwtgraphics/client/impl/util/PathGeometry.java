@@ -0,0 +1,423 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import java.util.List;
+
+import org.vaadin.addon.gwtgraphics.client.shape.path.Arc;
+import org.vaadin.addon.gwtgraphics.client.shape.path.CurveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.LineTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.MoveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathStep;
+
+/**
+ * This util class contains geometric helpers for path steps.
+ */
+public abstract class PathGeometry {
+
+	/**
+	 * Receives the segments of a path in absolute coordinates, see
+	 * {@link PathGeometry#visit(List, PathVisitor)}.
+	 */
+	public static abstract class PathVisitor {
+
+		public abstract void moveTo(double x, double y);
+
+		public abstract void lineTo(double x0, double y0, double x, double y);
+
+		public abstract void curveTo(double x0, double y0, double x1,
+				double y1, double x2, double y2, double x, double y);
+
+		/**
+		 * Called for an arc. The default implementation converts the arc to
+		 * center parameterization and calls
+		 * {@link #ellipticArc(double[], double, double)}, or
+		 * {@link #lineTo(double, double, double, double)} if the arc is
+		 * degenerate.
+		 */
+		public void arcTo(double x0, double y0, double rx, double ry,
+				double xAxisRotation, boolean largeArc, boolean sweep,
+				double x, double y) {
+			double[] c = arcToCenter(x0, y0, rx, ry, xAxisRotation, largeArc,
+					sweep, x, y);
+			if (c == null) {
+				lineTo(x0, y0, x, y);
+			} else {
+				ellipticArc(c, x, y);
+			}
+		}
+
+		/**
+		 * Called for a non-degenerate arc.
+		 *
+		 * @param center
+		 *            the arc as returned by
+		 *            {@link PathGeometry#arcToCenter(double, double, double, double, double, boolean, boolean, double, double)}
+		 * @param x
+		 *            x-coordinate of the end point
+		 * @param y
+		 *            y-coordinate of the end point
+		 */
+		public abstract void ellipticArc(double[] center, double x, double y);
+
+		/**
+		 * Closes the current sub-path, which started at the given point.
+		 */
+		public abstract void close(double x0, double y0, double startX,
+				double startY);
+	}
+
+	/**
+	 * Walks the given steps resolving relative coordinates.
+	 *
+	 * @param steps
+	 *            the path steps
+	 * @param visitor
+	 *            receives the segments in absolute coordinates
+	 */
+	public static void visit(List<PathStep> steps, PathVisitor visitor) {
+		double x = 0, y = 0, startX = 0, startY = 0;
+		for (int i = 0; i < steps.size(); i++) {
+			PathStep step = steps.get(i);
+			if (step instanceof MoveTo) {
+				MoveTo m = (MoveTo) step;
+				double ox = m.isRelativeCoords() ? x : 0;
+				double oy = m.isRelativeCoords() ? y : 0;
+				double nx = ox + m.getX();
+				double ny = oy + m.getY();
+				if (step instanceof Arc) {
+					Arc a = (Arc) step;
+					visitor.arcTo(x, y, a.getRx(), a.getRy(),
+							a.getxAxisRotation(), a.isLargeArc(), a.isSweep(),
+							nx, ny);
+				} else if (step instanceof CurveTo) {
+					CurveTo c = (CurveTo) step;
+					visitor.curveTo(x, y, ox + c.getX1(), oy + c.getY1(), ox
+							+ c.getX2(), oy + c.getY2(), nx, ny);
+				} else if (step instanceof LineTo) {
+					visitor.lineTo(x, y, nx, ny);
+				} else {
+					visitor.moveTo(nx, ny);
+					startX = nx;
+					startY = ny;
+				}
+				x = nx;
+				y = ny;
+			} else {
+				visitor.close(x, y, startX, startY);
+				x = startX;
+				y = startY;
+			}
+		}
+	}
+
+	/**
+	 * Walks the given path data resolving relative coordinates.
+	 *
+	 * @param data
+	 *            the path data
+	 * @param visitor
+	 *            receives the segments in absolute coordinates
+	 */
+	public static void visit(PathData data, PathVisitor visitor) {
+		double[] c = data.getCoords();
+		double x = 0, y = 0, startX = 0, startY = 0;
+		for (int i = 0; i < data.size(); i++) {
+			int type = data.getType(i);
+			if (type == PathData.CLOSE) {
+				visitor.close(x, y, startX, startY);
+				x = startX;
+				y = startY;
+				continue;
+			}
+			int o = data.getOffset(i);
+			double ox = data.isRelative(i) ? x : 0;
+			double oy = data.isRelative(i) ? y : 0;
+			switch (type) {
+			case PathData.MOVE_TO:
+				x = ox + c[o];
+				y = oy + c[o + 1];
+				visitor.moveTo(x, y);
+				startX = x;
+				startY = y;
+				break;
+			case PathData.LINE_TO:
+				visitor.lineTo(x, y, ox + c[o], oy + c[o + 1]);
+				x = ox + c[o];
+				y = oy + c[o + 1];
+				break;
+			case PathData.CURVE_TO:
+				visitor.curveTo(x, y, ox + c[o], oy + c[o + 1], ox + c[o + 2],
+						oy + c[o + 3], ox + c[o + 4], oy + c[o + 5]);
+				x = ox + c[o + 4];
+				y = oy + c[o + 5];
+				break;
+			default:
+				visitor.arcTo(x, y, c[o], c[o + 1], c[o + 2], c[o + 3] != 0,
+						c[o + 4] != 0, ox + c[o + 5], oy + c[o + 6]);
+				x = ox + c[o + 5];
+				y = oy + c[o + 6];
+			}
+		}
+	}
+
+	/**
+	 * Returns the exact bounds of the given path, including the extrema of
+	 * curves and arcs. Control points outside the curve are not included.
+	 *
+	 * @param steps
+	 *            the path steps
+	 * @return <code>{minX, minY, maxX, maxY}</code> or null for an empty path
+	 */
+	public static double[] getBounds(List<PathStep> steps) {
+		if (steps.isEmpty()) {
+			return null;
+		}
+		BoundsVisitor visitor = new BoundsVisitor();
+		visit(steps, visitor);
+		return visitor.bounds;
+	}
+
+	/**
+	 * Returns the exact bounds of the given path data, see
+	 * {@link #getBounds(List)}.
+	 */
+	public static double[] getBounds(PathData data) {
+		if (data.size() == 0) {
+			return null;
+		}
+		BoundsVisitor visitor = new BoundsVisitor();
+		visit(data, visitor);
+		return visitor.bounds;
+	}
+
+	private static class BoundsVisitor extends PathVisitor {
+		private final double[] bounds = { Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY };
+		private final double[] roots = new double[2];
+
+		private void include(double x, double y) {
+			bounds[0] = Math.min(bounds[0], x);
+			bounds[1] = Math.min(bounds[1], y);
+			bounds[2] = Math.max(bounds[2], x);
+			bounds[3] = Math.max(bounds[3], y);
+		}
+
+		@Override
+		public void moveTo(double x, double y) {
+			include(x, y);
+		}
+
+		@Override
+		public void lineTo(double x0, double y0, double x, double y) {
+			include(x, y);
+		}
+
+		@Override
+		public void curveTo(double x0, double y0, double x1, double y1,
+				double x2, double y2, double x, double y) {
+			include(x, y);
+			int n = cubicExtrema(x0, x1, x2, x, roots);
+			for (int i = 0; i < n; i++) {
+				include(cubic(x0, x1, x2, x, roots[i]),
+						cubic(y0, y1, y2, y, roots[i]));
+			}
+			n = cubicExtrema(y0, y1, y2, y, roots);
+			for (int i = 0; i < n; i++) {
+				include(cubic(x0, x1, x2, x, roots[i]),
+						cubic(y0, y1, y2, y, roots[i]));
+			}
+		}
+
+		@Override
+		public void ellipticArc(double[] c, double x, double y) {
+			include(x, y);
+			double rx = c[2];
+			double ry = c[3];
+			double cos = Math.cos(c[4]);
+			double sin = Math.sin(c[4]);
+			// angles where dx/dt and dy/dt vanish
+			double tx = Math.atan2(-ry * sin, rx * cos);
+			double ty = Math.atan2(ry * cos, rx * sin);
+			double[] angles = { tx, tx + Math.PI, ty, ty + Math.PI };
+			for (double t : angles) {
+				if (isInSweep(t, c[5], c[6])) {
+					double ct = Math.cos(t);
+					double st = Math.sin(t);
+					include(c[0] + rx * cos * ct - ry * sin * st, c[1] + rx
+							* sin * ct + ry * cos * st);
+				}
+			}
+		}
+
+		@Override
+		public void close(double x0, double y0, double startX,
+				double startY) {
+		}
+	}
+
+	/**
+	 * Finds the parameters in (0, 1) where the derivative of a cubic Bezier
+	 * coordinate is zero.
+	 *
+	 * @return the number of roots written to the array
+	 */
+	private static int cubicExtrema(double p0, double p1, double p2,
+			double p3, double[] roots) {
+		// derivative divided by 3: a t^2 + b t + c
+		double a = -p0 + 3 * p1 - 3 * p2 + p3;
+		double b = 2 * (p0 - 2 * p1 + p2);
+		double c = p1 - p0;
+		int n = 0;
+		if (Math.abs(a) < 1e-12) {
+			if (b != 0) {
+				n = addRoot(-c / b, roots, n);
+			}
+			return n;
+		}
+		double disc = b * b - 4 * a * c;
+		if (disc < 0) {
+			return 0;
+		}
+		double sq = Math.sqrt(disc);
+		n = addRoot((-b + sq) / (2 * a), roots, n);
+		return addRoot((-b - sq) / (2 * a), roots, n);
+	}
+
+	private static int addRoot(double t, double[] roots, int n) {
+		if (t > 0 && t < 1) {
+			roots[n++] = t;
+		}
+		return n;
+	}
+
+	private static double cubic(double p0, double p1, double p2, double p3,
+			double t) {
+		double mt = 1 - t;
+		return mt * mt * mt * p0 + 3 * mt * mt * t * p1 + 3 * mt * t * t * p2
+				+ t * t * t * p3;
+	}
+
+	/**
+	 * Tests whether an angle lies on an arc starting at start and sweeping
+	 * extent radians in either direction.
+	 */
+	private static boolean isInSweep(double angle, double start, double extent) {
+		double d = extent >= 0 ? angle - start : start - angle;
+		d %= 2 * Math.PI;
+		if (d < 0) {
+			d += 2 * Math.PI;
+		}
+		return d <= Math.abs(extent);
+	}
+
+	/**
+	 * Converts an SVG elliptical arc from endpoint to center
+	 * parameterization, as described in the SVG specification (F.6.5). Radii
+	 * which are too small to reach the end point are scaled up.
+	 *
+	 * @param x1
+	 *            absolute x-coordinate of the start point
+	 * @param y1
+	 *            absolute y-coordinate of the start point
+	 * @param rx
+	 *            x-radius
+	 * @param ry
+	 *            y-radius
+	 * @param xAxisRotation
+	 *            rotation of the ellipse in degrees
+	 * @param largeArc
+	 *            large arc flag
+	 * @param sweep
+	 *            sweep flag
+	 * @param x2
+	 *            absolute x-coordinate of the end point
+	 * @param y2
+	 *            absolute y-coordinate of the end point
+	 * @return <code>{cx, cy, rx, ry, rotation, startAngle, sweepAngle}</code>
+	 *         with angles in radians, or null if the arc degenerates to a
+	 *         straight line
+	 */
+	public static double[] arcToCenter(double x1, double y1, double rx,
+			double ry, double xAxisRotation, boolean largeArc, boolean sweep,
+			double x2, double y2) {
+		rx = Math.abs(rx);
+		ry = Math.abs(ry);
+		if (rx == 0 || ry == 0 || (x1 == x2 && y1 == y2)) {
+			return null;
+		}
+		double phi = Math.toRadians(xAxisRotation % 360);
+		double cos = Math.cos(phi);
+		double sin = Math.sin(phi);
+
+		double dx = (x1 - x2) / 2;
+		double dy = (y1 - y2) / 2;
+		double x1p = cos * dx + sin * dy;
+		double y1p = -sin * dx + cos * dy;
+
+		double lambda = (x1p * x1p) / (rx * rx) + (y1p * y1p) / (ry * ry);
+		if (lambda > 1) {
+			double s = Math.sqrt(lambda);
+			rx *= s;
+			ry *= s;
+		}
+
+		double rxs = rx * rx;
+		double rys = ry * ry;
+		double num = rxs * rys - rxs * y1p * y1p - rys * x1p * x1p;
+		double den = rxs * y1p * y1p + rys * x1p * x1p;
+		double coef = den == 0 ? 0 : Math.sqrt(Math.max(0, num / den));
+		if (largeArc == sweep) {
+			coef = -coef;
+		}
+		double cxp = coef * rx * y1p / ry;
+		double cyp = -coef * ry * x1p / rx;
+
+		double cx = cos * cxp - sin * cyp + (x1 + x2) / 2;
+		double cy = sin * cxp + cos * cyp + (y1 + y2) / 2;
+
+		double ux = (x1p - cxp) / rx;
+		double uy = (y1p - cyp) / ry;
+		double vx = (-x1p - cxp) / rx;
+		double vy = (-y1p - cyp) / ry;
+		double start = Math.atan2(uy, ux);
+		double extent = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+		if (!sweep && extent > 0) {
+			extent -= 2 * Math.PI;
+		} else if (sweep && extent < 0) {
+			extent += 2 * Math.PI;
+		}
+		return new double[] { cx, cy, rx, ry, phi, start, extent };
+	}
+
+	/**
+	 * Returns the squared distance from a point to a line segment.
+	 */
+	public static double distanceSquared(double px, double py, double x1,
+			double y1, double x2, double y2) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double len2 = dx * dx + dy * dy;
+		double t = len2 == 0 ? 0 : ((px - x1) * dx + (py - y1) * dy) / len2;
+		t = Math.max(0, Math.min(1, t));
+		double ex = x1 + t * dx - px;
+		double ey = y1 + t * dy - py;
+		return ex * ex + ey * ey;
+	}
+
+}
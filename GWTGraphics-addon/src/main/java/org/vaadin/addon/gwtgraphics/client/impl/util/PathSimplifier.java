@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+import org.vaadin.addon.gwtgraphics.client.shape.Path;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+
+/**
+ * Simplifies the polylines of a path with the Ramer-Douglas-Peucker
+ * algorithm. Runs of consecutive line segments are reduced to the vertices
+ * deviating more than the tolerance from the simplified line; curves and
+ * arcs are kept as they are.
+ */
+public class PathSimplifier extends PathVisitor {
+
+	private final PathData result;
+	private final double tolerance;
+
+	/**
+	 * Vertices of the current run of lines. The first one has already been
+	 * written to the result.
+	 */
+	private double[] xs = new double[64];
+	private double[] ys = new double[64];
+	private int count;
+
+	/**
+	 * Returns the steps of the given path simplified with the given
+	 * tolerance, using absolute coordinates.
+	 *
+	 * @param path
+	 *            the path to simplify
+	 * @param tolerance
+	 *            the maximum distance between removed vertices and the
+	 *            simplified line
+	 * @return the simplified path data
+	 */
+	public static PathData simplify(Path path, double tolerance) {
+		PathSimplifier simplifier = new PathSimplifier(tolerance,
+				path.getStepCount());
+		path.visit(simplifier);
+		simplifier.flush();
+		return simplifier.result;
+	}
+
+	protected PathSimplifier(double tolerance, int capacity) {
+		this.tolerance = tolerance;
+		result = new PathData(Math.min(capacity, 1024));
+	}
+
+	@Override
+	public void moveTo(double x, double y) {
+		flush();
+		result.moveTo(false, x, y);
+		add(x, y);
+	}
+
+	@Override
+	public void lineTo(double x0, double y0, double x, double y) {
+		if (count == 0) {
+			add(x0, y0);
+		}
+		add(x, y);
+	}
+
+	@Override
+	public void curveTo(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x, double y) {
+		flush();
+		result.curveTo(false, x1, y1, x2, y2, x, y);
+		add(x, y);
+	}
+
+	@Override
+	public void arcTo(double x0, double y0, double rx, double ry,
+			double xAxisRotation, boolean largeArc, boolean sweep, double x,
+			double y) {
+		flush();
+		result.arcTo(false, rx, ry, xAxisRotation, largeArc, sweep, x, y);
+		add(x, y);
+	}
+
+	@Override
+	public void ellipticArc(double[] center, double x, double y) {
+		// arcs are copied in arcTo
+	}
+
+	@Override
+	public void close(double x0, double y0, double startX, double startY) {
+		flush();
+		result.close();
+		add(startX, startY);
+	}
+
+	private void add(double x, double y) {
+		if (count == xs.length) {
+			double[] nx = new double[count * 2];
+			double[] ny = new double[count * 2];
+			System.arraycopy(xs, 0, nx, 0, count);
+			System.arraycopy(ys, 0, ny, 0, count);
+			xs = nx;
+			ys = ny;
+		}
+		xs[count] = x;
+		ys[count] = y;
+		count++;
+	}
+
+	/**
+	 * Writes the simplified current run of lines to the result and starts a
+	 * new run.
+	 */
+	private void flush() {
+		if (count > 1) {
+			boolean[] keep = new boolean[count];
+			keep[count - 1] = true;
+			markVertices(keep);
+			for (int i = 1; i < count; i++) {
+				if (keep[i]) {
+					result.lineTo(false, xs[i], ys[i]);
+				}
+			}
+		}
+		count = 0;
+	}
+
+	/**
+	 * Marks the vertices to keep. Uses an explicit stack instead of
+	 * recursion, as runs can have a huge number of vertices.
+	 */
+	private void markVertices(boolean[] keep) {
+		double t2 = tolerance * tolerance;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = count - 1;
+		while (top > 0) {
+			int end = stack[--top];
+			int start = stack[--top];
+			double max = -1;
+			int index = -1;
+			for (int i = start + 1; i < end; i++) {
+				double d = PathGeometry.distanceSquared(xs[i], ys[i],
+						xs[start], ys[start], xs[end], ys[end]);
+				if (d > max) {
+					max = d;
+					index = i;
+				}
+			}
+			if (index < 0 || max <= t2) {
+				continue;
+			}
+			keep[index] = true;
+			if (top + 4 > stack.length) {
+				int[] s = new int[stack.length * 2];
+				System.arraycopy(stack, 0, s, 0, top);
+				stack = s;
+			}
+			stack[top++] = start;
+			stack[top++] = index;
+			stack[top++] = index;
+			stack[top++] = end;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact store for the SVG properties of a VectorObject. Property names are
+ * interned into small integer keys shared by all stores, numeric values are
+ * kept as doubles and formatted to strings only when they are read as such.
+ * Every entry has a dirty flag, which is set when its value changes and
+ * cleared once the value has been written to the DOM.
+ */
+public class PropertyStore {
+
+	private static final Map<String, Integer> KEYS = new HashMap<String, Integer>();
+
+	private static final List<String> NAMES = new ArrayList<String>();
+
+	protected int[] keys;
+
+	protected double[] numbers;
+
+	/**
+	 * String values, null for entries holding a number.
+	 */
+	protected String[] strings;
+
+	protected boolean[] dirty;
+
+	protected int size;
+
+	public PropertyStore() {
+		this(4);
+	}
+
+	public PropertyStore(int capacity) {
+		keys = new int[capacity];
+		numbers = new double[capacity];
+		strings = new String[capacity];
+		dirty = new boolean[capacity];
+	}
+
+	/**
+	 * Returns the key for the given property name, registering the name if
+	 * it hasn't been seen before.
+	 *
+	 * @param name
+	 *            name of the property
+	 * @return key of the property
+	 */
+	public static int key(String name) {
+		Integer key = KEYS.get(name);
+		if (key == null) {
+			key = NAMES.size();
+			NAMES.add(name);
+			KEYS.put(name, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the key for the given property name or -1 if no property with
+	 * this name has ever been registered.
+	 *
+	 * @param name
+	 *            name of the property
+	 * @return key of the property or -1
+	 */
+	public static int findKey(String name) {
+		Integer key = KEYS.get(name);
+		return key == null ? -1 : key;
+	}
+
+	/**
+	 * Returns the property name of the given key.
+	 *
+	 * @param key
+	 *            key of the property
+	 * @return name of the property
+	 */
+	public static String name(int key) {
+		return NAMES.get(key);
+	}
+
+	/**
+	 * Formats a numeric property value for the DOM.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the value as a string
+	 */
+	public static String format(double value) {
+		return NumberUtil.format(value);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int keyAt(int index) {
+		return keys[index];
+	}
+
+	public boolean isNumberAt(int index) {
+		return strings[index] == null;
+	}
+
+	/**
+	 * Returns the value at the given index formatted as a string.
+	 */
+	public String valueAt(int index) {
+		String s = strings[index];
+		return s != null ? s : format(numbers[index]);
+	}
+
+	public boolean isDirtyAt(int index) {
+		return dirty[index];
+	}
+
+	public void markClean(int index) {
+		dirty[index] = false;
+	}
+
+	public void markAllDirty() {
+		for (int i = 0; i < size; i++) {
+			dirty[i] = true;
+		}
+	}
+
+	public int indexOf(int key) {
+		for (int i = 0; i < size; i++) {
+			if (keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public boolean contains(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Stores a numeric value.
+	 *
+	 * @return true if the stored value changed
+	 */
+	public boolean setNumber(int key, double value) {
+		int i = indexOf(key);
+		if (i < 0) {
+			i = append(key);
+		} else if (strings[i] == null && numbers[i] == value) {
+			return false;
+		}
+		numbers[i] = value;
+		strings[i] = null;
+		dirty[i] = true;
+		return true;
+	}
+
+	/**
+	 * Stores a string value. The value must not be null.
+	 *
+	 * @return true if the stored value changed
+	 */
+	public boolean setString(int key, String value) {
+		int i = indexOf(key);
+		if (i < 0) {
+			i = append(key);
+		} else if (value.equals(strings[i])) {
+			return false;
+		}
+		strings[i] = value;
+		dirty[i] = true;
+		return true;
+	}
+
+	/**
+	 * Removes a value. The order of the remaining values is preserved.
+	 *
+	 * @return true if a value was removed
+	 */
+	public boolean remove(int key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return false;
+		}
+		int moved = size - i - 1;
+		System.arraycopy(keys, i + 1, keys, i, moved);
+		System.arraycopy(numbers, i + 1, numbers, i, moved);
+		System.arraycopy(strings, i + 1, strings, i, moved);
+		System.arraycopy(dirty, i + 1, dirty, i, moved);
+		size--;
+		strings[size] = null;
+		return true;
+	}
+
+	/**
+	 * Returns a copy of this store with the same values and dirty flags.
+	 */
+	public PropertyStore copy() {
+		PropertyStore copy = new PropertyStore(size);
+		System.arraycopy(keys, 0, copy.keys, 0, size);
+		System.arraycopy(numbers, 0, copy.numbers, 0, size);
+		System.arraycopy(strings, 0, copy.strings, 0, size);
+		System.arraycopy(dirty, 0, copy.dirty, 0, size);
+		copy.size = size;
+		return copy;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			strings[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns a value as a number. String values are parsed.
+	 */
+	public double getNumber(int key, double defaultValue) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return defaultValue;
+		}
+		if (strings[i] == null) {
+			return numbers[i];
+		}
+		return NumberUtil.parseDoubleValue(strings[i], defaultValue);
+	}
+
+	/**
+	 * Returns a value as a string. Numeric values are formatted.
+	 */
+	public String getString(int key, String defaultValue) {
+		int i = indexOf(key);
+		return i < 0 ? defaultValue : valueAt(i);
+	}
+
+	protected int append(int key) {
+		if (size == keys.length) {
+			int capacity = Math.max(4, size * 2);
+			keys = copyOf(keys, capacity);
+			double[] n = new double[capacity];
+			System.arraycopy(numbers, 0, n, 0, size);
+			numbers = n;
+			String[] s = new String[capacity];
+			System.arraycopy(strings, 0, s, 0, size);
+			strings = s;
+			boolean[] d = new boolean[capacity];
+			System.arraycopy(dirty, 0, d, 0, size);
+			dirty = d;
+		}
+		keys[size] = key;
+		return size++;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+}
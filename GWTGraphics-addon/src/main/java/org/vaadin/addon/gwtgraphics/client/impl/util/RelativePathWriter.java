@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+
+/**
+ * Writes SVG path data using relative coordinates, which are usually much
+ * shorter than absolute ones for detailed paths. The offsets are computed
+ * between rounded points, so the rounding error does not accumulate along
+ * the path. Separators before negative numbers are left out.
+ */
+public class RelativePathWriter extends PathVisitor {
+
+	private final StringBuilder out;
+
+	/**
+	 * The rounded current point and start of the current sub-path.
+	 */
+	private double x, y, startX, startY;
+
+	public RelativePathWriter(StringBuilder out) {
+		this.out = out;
+	}
+
+	@Override
+	public void moveTo(double x, double y) {
+		out.append(" m");
+		appendEnd(x, y, true);
+		startX = this.x;
+		startY = this.y;
+	}
+
+	@Override
+	public void lineTo(double x0, double y0, double x, double y) {
+		out.append(" l");
+		appendEnd(x, y, true);
+	}
+
+	@Override
+	public void curveTo(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x, double y) {
+		out.append(" c");
+		append(NumberUtil.round(x1) - this.x, true);
+		append(NumberUtil.round(y1) - this.y, false);
+		append(NumberUtil.round(x2) - this.x, false);
+		append(NumberUtil.round(y2) - this.y, false);
+		appendEnd(x, y, false);
+	}
+
+	@Override
+	public void arcTo(double x0, double y0, double rx, double ry,
+			double xAxisRotation, boolean largeArc, boolean sweep, double x,
+			double y) {
+		out.append(" a");
+		append(rx, true);
+		out.append(',');
+		append(ry, true);
+		append(xAxisRotation, false);
+		out.append(' ').append(largeArc ? '1' : '0').append(',')
+				.append(sweep ? '1' : '0');
+		appendEnd(x, y, false);
+	}
+
+	@Override
+	public void ellipticArc(double[] center, double x, double y) {
+		// arcs are written in arcTo
+	}
+
+	@Override
+	public void close(double x0, double y0, double startX, double startY) {
+		out.append(" z");
+		x = this.startX;
+		y = this.startY;
+	}
+
+	/**
+	 * Appends the offset to the given end point and makes it the current
+	 * point.
+	 */
+	private void appendEnd(double x, double y, boolean first) {
+		double rx = NumberUtil.round(x);
+		double ry = NumberUtil.round(y);
+		append(rx - this.x, first);
+		append(ry - this.y, false);
+		this.x = rx;
+		this.y = ry;
+	}
+
+	/**
+	 * Appends a number, preceded by a space unless it is the first number of
+	 * a command or negative.
+	 */
+	private void append(double value, boolean first) {
+		if (!first && NumberUtil.round(value) >= 0) {
+			out.append(' ');
+		}
+		NumberUtil.append(out, value);
+	}
+}
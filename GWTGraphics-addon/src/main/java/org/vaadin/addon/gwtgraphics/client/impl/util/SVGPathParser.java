@@ -0,0 +1,287 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+
+/**
+ * Parses SVG path data in a single pass without creating intermediate
+ * objects. All commands are supported, including implicit repetition.
+ * Horizontal and vertical lines become line steps, and quadratic and smooth
+ * curves become cubic curve steps.
+ */
+public class SVGPathParser {
+
+	private final String d;
+	private final int length;
+	private int pos;
+
+	/**
+	 * Current point, start of the current sub-path and the last control
+	 * point of the previous curve, in absolute coordinates.
+	 */
+	private double x, y, startX, startY, controlX, controlY;
+
+	/**
+	 * Parses the given path data and appends the steps to the given
+	 * PathData.
+	 *
+	 * @param d
+	 *            the SVG path data
+	 * @param out
+	 *            receives the steps
+	 * @throws IllegalArgumentException
+	 *             if the path data is malformed
+	 */
+	public static void parse(String d, PathData out) {
+		new SVGPathParser(d).parse(out);
+	}
+
+	protected SVGPathParser(String d) {
+		this.d = d;
+		length = d.length();
+	}
+
+	protected void parse(PathData out) {
+		char command = 0;
+		char previous = 0;
+		skipSeparators();
+		while (pos < length) {
+			char c = d.charAt(pos);
+			if (isCommand(c)) {
+				if (previous == 0 && c != 'M' && c != 'm') {
+					throw error("Path data must start with a move");
+				}
+				command = c;
+				pos++;
+			} else if (command == 0 || command == 'z' || command == 'Z') {
+				throw error("Command expected");
+			} else if (command == 'M') {
+				// coordinates after a move are implicit lines
+				command = 'L';
+			} else if (command == 'm') {
+				command = 'l';
+			}
+			parseCommand(command, previous, out);
+			previous = command;
+			skipSeparators();
+		}
+	}
+
+	private void parseCommand(char command, char previous, PathData out) {
+		// a leading relative move is treated as absolute
+		boolean relative = Character.isLowerCase(command) && previous != 0;
+		double ox = relative ? x : 0;
+		double oy = relative ? y : 0;
+		char type = Character.toUpperCase(command);
+		char previousType = Character.toUpperCase(previous);
+		switch (type) {
+		case 'M':
+			x = ox + number();
+			y = oy + number();
+			startX = x;
+			startY = y;
+			out.moveTo(relative, x - ox, y - oy);
+			break;
+		case 'L':
+			x = ox + number();
+			y = oy + number();
+			out.lineTo(relative, x - ox, y - oy);
+			break;
+		case 'H':
+			x = ox + number();
+			out.lineTo(relative, x - ox, relative ? 0 : y);
+			break;
+		case 'V':
+			y = oy + number();
+			out.lineTo(relative, relative ? 0 : x, y - oy);
+			break;
+		case 'C':
+		case 'S': {
+			double x1, y1;
+			if (type == 'C') {
+				x1 = ox + number();
+				y1 = oy + number();
+			} else if (previousType == 'C' || previousType == 'S') {
+				x1 = 2 * x - controlX;
+				y1 = 2 * y - controlY;
+			} else {
+				x1 = x;
+				y1 = y;
+			}
+			double x2 = ox + number();
+			double y2 = oy + number();
+			double ex = ox + number();
+			double ey = oy + number();
+			out.curveTo(relative, x1 - ox, y1 - oy, x2 - ox, y2 - oy, ex - ox,
+					ey - oy);
+			controlX = x2;
+			controlY = y2;
+			x = ex;
+			y = ey;
+			break;
+		}
+		case 'Q':
+		case 'T': {
+			double qx, qy;
+			if (type == 'Q') {
+				qx = ox + number();
+				qy = oy + number();
+			} else if (previousType == 'Q' || previousType == 'T') {
+				qx = 2 * x - controlX;
+				qy = 2 * y - controlY;
+			} else {
+				qx = x;
+				qy = y;
+			}
+			double ex = ox + number();
+			double ey = oy + number();
+			// degree elevation of the quadratic curve
+			double x1 = x + 2.0 / 3 * (qx - x);
+			double y1 = y + 2.0 / 3 * (qy - y);
+			double x2 = ex + 2.0 / 3 * (qx - ex);
+			double y2 = ey + 2.0 / 3 * (qy - ey);
+			out.curveTo(relative, x1 - ox, y1 - oy, x2 - ox, y2 - oy, ex - ox,
+					ey - oy);
+			controlX = qx;
+			controlY = qy;
+			x = ex;
+			y = ey;
+			break;
+		}
+		case 'A': {
+			double rx = number();
+			double ry = number();
+			double rotation = number();
+			boolean largeArc = flag();
+			boolean sweep = flag();
+			x = ox + number();
+			y = oy + number();
+			out.arcTo(relative, rx, ry, rotation, largeArc, sweep, x - ox, y
+					- oy);
+			break;
+		}
+		case 'Z':
+			out.close();
+			x = startX;
+			y = startY;
+			break;
+		default:
+			throw error("Unknown command " + command);
+		}
+	}
+
+	private static boolean isCommand(char c) {
+		switch (c) {
+		case 'M': case 'm': case 'L': case 'l': case 'H': case 'h':
+		case 'V': case 'v': case 'C': case 'c': case 'S': case 's':
+		case 'Q': case 'q': case 'T': case 't': case 'A': case 'a':
+		case 'Z': case 'z':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private void skipSeparators() {
+		while (pos < length) {
+			char c = d.charAt(pos);
+			if (c != ' ' && c != ',' && c != '\t' && c != '\n' && c != '\r'
+					&& c != '\f') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * Reads an arc flag, which may be written without a following
+	 * separator.
+	 */
+	private boolean flag() {
+		skipSeparators();
+		if (pos < length) {
+			char c = d.charAt(pos);
+			if (c == '0' || c == '1') {
+				pos++;
+				return c == '1';
+			}
+		}
+		throw error("Arc flag expected");
+	}
+
+	/**
+	 * Reads a number without creating a substring.
+	 */
+	private double number() {
+		skipSeparators();
+		int start = pos;
+		boolean negative = false;
+		if (pos < length && (d.charAt(pos) == '-' || d.charAt(pos) == '+')) {
+			negative = d.charAt(pos) == '-';
+			pos++;
+		}
+		double mantissa = 0;
+		int exponent = 0;
+		boolean digits = false;
+		while (pos < length && isDigit(d.charAt(pos))) {
+			mantissa = mantissa * 10 + (d.charAt(pos++) - '0');
+			digits = true;
+		}
+		if (pos < length && d.charAt(pos) == '.') {
+			pos++;
+			while (pos < length && isDigit(d.charAt(pos))) {
+				mantissa = mantissa * 10 + (d.charAt(pos++) - '0');
+				exponent--;
+				digits = true;
+			}
+		}
+		if (!digits) {
+			pos = start;
+			throw error("Number expected");
+		}
+		if (pos < length && (d.charAt(pos) == 'e' || d.charAt(pos) == 'E')) {
+			int mark = pos++;
+			boolean negativeExp = false;
+			if (pos < length && (d.charAt(pos) == '-' || d.charAt(pos) == '+')) {
+				negativeExp = d.charAt(pos) == '-';
+				pos++;
+			}
+			if (pos < length && isDigit(d.charAt(pos))) {
+				int e = 0;
+				while (pos < length && isDigit(d.charAt(pos))) {
+					e = e * 10 + (d.charAt(pos++) - '0');
+				}
+				exponent += negativeExp ? -e : e;
+			} else {
+				// not an exponent
+				pos = mark;
+			}
+		}
+		double value = exponent == 0 ? mantissa : exponent > 0 ? mantissa
+				* Math.pow(10, exponent) : mantissa / Math.pow(10, -exponent);
+		return negative ? -value : value;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at index " + pos
+				+ " of path data \"" + d + "\"");
+	}
+}
@@ -15,6 +15,13 @@
  */
 package org.vaadin.addon.gwtgraphics.client.impl.util;
 
+import org.vaadin.addon.gwtgraphics.client.shape.path.Arc;
+import org.vaadin.addon.gwtgraphics.client.shape.path.ClosePath;
+import org.vaadin.addon.gwtgraphics.client.shape.path.CurveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.LineTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.MoveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathStep;
+
 import com.google.gwt.dom.client.Element;
 
 /**
@@ -75,4 +82,98 @@ public abstract class SVGUtil {
 		return bbox;
 	}-*/;
 
+	/**
+	 * Appends the SVG path data of a single step, preceded by a space.
+	 *
+	 * @param path
+	 *            the path data being built
+	 * @param step
+	 *            the step to append
+	 */
+	public static void appendPathStep(StringBuilder path, PathStep step) {
+		if (step instanceof Arc) {
+			Arc arc = (Arc) step;
+			path.append(arc.isRelativeCoords() ? " a" : " A");
+			appendPoint(path, arc.getRx(), ',', arc.getRy());
+			path.append(' ');
+			NumberUtil.append(path, arc.getxAxisRotation());
+			path.append(' ').append(arc.isLargeArc() ? '1' : '0').append(',')
+			.append(arc.isSweep() ? '1' : '0');
+			path.append(' ');
+			appendPoint(path, arc.getX(), ',', arc.getY());
+		} else if (step instanceof CurveTo) {
+			CurveTo curve = (CurveTo) step;
+			path.append(curve.isRelativeCoords() ? " c" : " C");
+			appendPoint(path, curve.getX1(), ' ', curve.getY1());
+			path.append(' ');
+			appendPoint(path, curve.getX2(), ' ', curve.getY2());
+			path.append(' ');
+			appendPoint(path, curve.getX(), ' ', curve.getY());
+		} else if (step instanceof LineTo) {
+			LineTo lineTo = (LineTo) step;
+			path.append(lineTo.isRelativeCoords() ? " l" : " L");
+			appendPoint(path, lineTo.getX(), ' ', lineTo.getY());
+		} else if (step instanceof MoveTo) {
+			MoveTo moveTo = (MoveTo) step;
+			path.append(moveTo.isRelativeCoords() ? " m" : " M");
+			appendPoint(path, moveTo.getX(), ' ', moveTo.getY());
+		} else if (step instanceof ClosePath) {
+			path.append(" z");
+		}
+	}
+
+	/**
+	 * Appends two formatted coordinates with the given separator.
+	 */
+	public static void appendPoint(StringBuilder path, double x,
+			char separator, double y) {
+		NumberUtil.append(path, x).append(separator);
+		NumberUtil.append(path, y);
+	}
+
+	/**
+	 * Appends <code> name="value"</code> to the given markup, escaping the
+	 * value.
+	 */
+	public static void appendAttribute(StringBuilder out, String name,
+			String value) {
+		out.append(' ').append(name).append("=\"");
+		appendEscaped(out, value, true);
+		out.append('"');
+	}
+
+	/**
+	 * Appends the given text to XML markup, escaping the characters that
+	 * would otherwise be interpreted as markup.
+	 *
+	 * @param out
+	 *            the markup being built
+	 * @param text
+	 *            the raw text
+	 * @param attribute
+	 *            true if the text is used as a quoted attribute value
+	 */
+	public static void appendEscaped(StringBuilder out, String text,
+			boolean attribute) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				out.append("&amp;");
+				break;
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '"':
+				out.append(attribute ? "&quot;" : "\"");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
+
 }
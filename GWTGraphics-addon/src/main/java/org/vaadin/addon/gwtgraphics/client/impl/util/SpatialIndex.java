@@ -0,0 +1,203 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over item bounds supporting cheap updates and point
+ * queries. Each item is registered in every cell its bounds overlap; items
+ * spanning too many cells are kept in a separate list checked on every
+ * query.
+ *
+ * @param <T>
+ *            type of the indexed items
+ */
+public class SpatialIndex<T> {
+
+	/**
+	 * Items covering more cells than this are not put into the grid.
+	 */
+	protected static final int MAX_CELLS_PER_ITEM = 64;
+
+	protected static class Entry<T> {
+		final T item;
+		double minX, minY, maxX, maxY;
+		int cellMinX, cellMinY, cellMaxX, cellMaxY;
+		boolean large;
+
+		Entry(T item) {
+			this.item = item;
+		}
+
+		boolean contains(double x, double y) {
+			return x >= minX && x <= maxX && y >= minY && y <= maxY;
+		}
+	}
+
+	protected final double cellSize;
+
+	protected final Map<Integer, List<Entry<T>>> cells = new HashMap<Integer, List<Entry<T>>>();
+
+	protected final Map<T, Entry<T>> entries = new HashMap<T, Entry<T>>();
+
+	protected final List<Entry<T>> largeEntries = new ArrayList<Entry<T>>();
+
+	/**
+	 * Creates an index with the given cell size.
+	 *
+	 * @param cellSize
+	 *            width and height of a grid cell in pixels
+	 */
+	public SpatialIndex(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Adds an item or updates the bounds of an already indexed item.
+	 */
+	public void put(T item, double minX, double minY, double maxX, double maxY) {
+		Entry<T> e = entries.get(item);
+		int cx1 = cell(minX), cy1 = cell(minY), cx2 = cell(maxX), cy2 = cell(maxY);
+		boolean large = ((double) cx2 - cx1 + 1) * ((double) cy2 - cy1 + 1) > MAX_CELLS_PER_ITEM;
+		if (e == null) {
+			e = new Entry<T>(item);
+			entries.put(item, e);
+		} else if (e.large == large
+				&& (large || (e.cellMinX == cx1 && e.cellMinY == cy1
+						&& e.cellMaxX == cx2 && e.cellMaxY == cy2))) {
+			// same cells, only the exact bounds change
+			setBounds(e, minX, minY, maxX, maxY);
+			return;
+		} else {
+			unlink(e);
+		}
+		setBounds(e, minX, minY, maxX, maxY);
+		e.cellMinX = cx1;
+		e.cellMinY = cy1;
+		e.cellMaxX = cx2;
+		e.cellMaxY = cy2;
+		e.large = large;
+		if (large) {
+			largeEntries.add(e);
+		} else {
+			for (int x = cx1; x <= cx2; x++) {
+				for (int y = cy1; y <= cy2; y++) {
+					Integer key = key(x, y);
+					List<Entry<T>> list = cells.get(key);
+					if (list == null) {
+						list = new ArrayList<Entry<T>>(4);
+						cells.put(key, list);
+					}
+					list.add(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes an item from the index.
+	 *
+	 * @return true if the item was indexed
+	 */
+	public boolean remove(T item) {
+		Entry<T> e = entries.remove(item);
+		if (e == null) {
+			return false;
+		}
+		unlink(e);
+		return true;
+	}
+
+	public boolean contains(T item) {
+		return entries.containsKey(item);
+	}
+
+	/**
+	 * Adds every item whose bounds contain the given point to the result
+	 * list. Each item is added at most once.
+	 */
+	public void query(double x, double y, List<T> result) {
+		List<Entry<T>> list = cells.get(key(cell(x), cell(y)));
+		if (list != null) {
+			for (int i = 0; i < list.size(); i++) {
+				Entry<T> e = list.get(i);
+				if (e.contains(x, y)) {
+					result.add(e.item);
+				}
+			}
+		}
+		for (int i = 0; i < largeEntries.size(); i++) {
+			Entry<T> e = largeEntries.get(i);
+			if (e.contains(x, y)) {
+				result.add(e.item);
+			}
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		cells.clear();
+		entries.clear();
+		largeEntries.clear();
+	}
+
+	private void unlink(Entry<T> e) {
+		if (e.large) {
+			largeEntries.remove(e);
+			return;
+		}
+		for (int x = e.cellMinX; x <= e.cellMaxX; x++) {
+			for (int y = e.cellMinY; y <= e.cellMaxY; y++) {
+				Integer key = key(x, y);
+				List<Entry<T>> list = cells.get(key);
+				if (list != null) {
+					list.remove(e);
+					if (list.isEmpty()) {
+						cells.remove(key);
+					}
+				}
+			}
+		}
+	}
+
+	private static <T> void setBounds(Entry<T> e, double minX, double minY,
+			double maxX, double maxY) {
+		e.minX = minX;
+		e.minY = minY;
+		e.maxX = maxX;
+		e.maxY = maxY;
+	}
+
+	private int cell(double v) {
+		return (int) Math.floor(v / cellSize);
+	}
+
+	/**
+	 * Packs cell coordinates into a key. Distant cells may share a key,
+	 * which only adds candidates that fail the bounds check.
+	 */
+	private static Integer key(int x, int y) {
+		return Integer.valueOf((x << 16) ^ (y & 0xffff));
+	}
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.canvas.client.Canvas;
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style;
+import com.google.gwt.user.client.ui.RootPanel;
+
+/**
+ * Measures the rendered size of single-line texts. Widths are kept in an LRU
+ * cache keyed by font family, font size and text, and heights are cached per
+ * font. Texts are measured in a reusable hidden element, or optionally with
+ * the canvas measureText() method which needs no layout at all.
+ */
+public class TextMeasurer {
+
+	private static TextMeasurer instance;
+
+	/**
+	 * Default maximum number of cached widths.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 2000;
+
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+
+	private final LinkedHashMap<String, Integer> widths = new LinkedHashMap<String, Integer>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	private final Map<String, Integer> heights = new HashMap<String, Integer>();
+
+	private DivElement measureElement;
+
+	private boolean useCanvas;
+
+	private Context2d context;
+
+	/**
+	 * Returns the shared TextMeasurer.
+	 */
+	public static TextMeasurer get() {
+		if (instance == null) {
+			instance = new TextMeasurer();
+		}
+		return instance;
+	}
+
+	/**
+	 * Sets the maximum number of cached widths. The least recently used
+	 * entries are evicted first.
+	 *
+	 * @param size
+	 *            the maximum number of entries
+	 */
+	public void setCacheSize(int size) {
+		cacheSize = size;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Enables measuring widths with the canvas measureText() method, which
+	 * avoids layout but may differ slightly from the rendered text. Ignored
+	 * if the browser doesn't support canvas. Heights are always measured in
+	 * the hidden element.
+	 *
+	 * @param useCanvas
+	 *            true to measure widths with canvas
+	 */
+	public void setUseCanvas(boolean useCanvas) {
+		useCanvas = useCanvas && Canvas.isSupported();
+		if (this.useCanvas != useCanvas) {
+			this.useCanvas = useCanvas;
+			widths.clear();
+		}
+	}
+
+	public boolean isUseCanvas() {
+		return useCanvas;
+	}
+
+	/**
+	 * Empties the caches, for example after web fonts have been loaded.
+	 */
+	public void clear() {
+		widths.clear();
+		heights.clear();
+	}
+
+	/**
+	 * Returns the width of the given text in pixels.
+	 *
+	 * @param text
+	 *            the text
+	 * @param fontFamily
+	 *            the font family
+	 * @param fontSize
+	 *            the font size in pixels
+	 * @return the width in pixels
+	 */
+	public int getWidth(String text, String fontFamily, int fontSize) {
+		if (text == null || text.isEmpty()) {
+			return 0;
+		}
+		String key = key(fontFamily, fontSize, text);
+		Integer width = widths.get(key);
+		if (width == null) {
+			width = useCanvas ? measureWithCanvas(text, fontFamily, fontSize)
+					: measure(text, fontFamily, fontSize, true);
+			widths.put(key, width);
+		}
+		return width;
+	}
+
+	/**
+	 * Returns the height of a line of text in pixels.
+	 *
+	 * @param fontFamily
+	 *            the font family
+	 * @param fontSize
+	 *            the font size in pixels
+	 * @return the height in pixels
+	 */
+	public int getHeight(String fontFamily, int fontSize) {
+		String key = key(fontFamily, fontSize, "");
+		Integer height = heights.get(key);
+		if (height == null) {
+			height = measure("Mg", fontFamily, fontSize, false);
+			heights.put(key, height);
+		}
+		return height;
+	}
+
+	/**
+	 * Returns the widths of the given texts. All texts not in the cache are
+	 * measured together so that the browser lays them out only once.
+	 *
+	 * @param texts
+	 *            the texts
+	 * @param fontFamilies
+	 *            the font family of each text
+	 * @param fontSizes
+	 *            the font size of each text in pixels
+	 * @return the widths in pixels in the same order
+	 */
+	public int[] getWidths(List<String> texts, List<String> fontFamilies,
+			int[] fontSizes) {
+		int[] result = new int[texts.size()];
+		List<Integer> missing = new ArrayList<Integer>();
+		for (int i = 0; i < result.length; i++) {
+			String text = texts.get(i);
+			if (text == null || text.isEmpty()) {
+				continue;
+			}
+			if (useCanvas) {
+				result[i] = getWidth(text, fontFamilies.get(i), fontSizes[i]);
+				continue;
+			}
+			Integer width = widths.get(key(fontFamilies.get(i), fontSizes[i],
+					text));
+			if (width != null) {
+				result[i] = width;
+			} else {
+				missing.add(i);
+			}
+		}
+		if (missing.isEmpty()) {
+			return result;
+		}
+
+		// write all spans first and read afterwards, which costs one layout
+		Element container = getMeasureElement();
+		Element[] spans = new Element[missing.size()];
+		for (int j = 0; j < spans.length; j++) {
+			int i = missing.get(j);
+			spans[j] = createSpan(texts.get(i), fontFamilies.get(i),
+					fontSizes[i]);
+			container.appendChild(spans[j]);
+		}
+		for (int j = 0; j < spans.length; j++) {
+			int i = missing.get(j);
+			result[i] = spans[j].getOffsetWidth();
+			widths.put(key(fontFamilies.get(i), fontSizes[i], texts.get(i)),
+					result[i]);
+		}
+		container.removeAllChildren();
+		return result;
+	}
+
+	protected int measure(String text, String fontFamily, int fontSize,
+			boolean measureWidth) {
+		Element container = getMeasureElement();
+		Element span = createSpan(text, fontFamily, fontSize);
+		container.appendChild(span);
+		int measurement = measureWidth ? span.getOffsetWidth() : span
+				.getOffsetHeight();
+		container.removeChild(span);
+		return measurement;
+	}
+
+	protected int measureWithCanvas(String text, String fontFamily,
+			int fontSize) {
+		if (context == null) {
+			context = Document.get().createCanvasElement().getContext2d();
+		}
+		context.setFont(fontSize + "px " + fontFamily);
+		return (int) Math.round(context.measureText(text).getWidth());
+	}
+
+	private Element createSpan(String text, String fontFamily, int fontSize) {
+		Element span = Document.get().createElement("span");
+		Style style = span.getStyle();
+		style.setProperty("fontFamily", fontFamily);
+		style.setPropertyPx("fontSize", fontSize);
+		span.setInnerText(text);
+		return span;
+	}
+
+	/**
+	 * Returns the hidden element the texts are measured in. It stays in the
+	 * document so that it is created and attached only once.
+	 */
+	private Element getMeasureElement() {
+		if (measureElement == null) {
+			measureElement = Document.get().createDivElement();
+			Style style = measureElement.getStyle();
+			style.setProperty("visibility", "hidden");
+			style.setProperty("position", "absolute");
+			style.setPropertyPx("left", -10000);
+			style.setPropertyPx("top", -10000);
+			style.setProperty("whiteSpace", "nowrap");
+		}
+		if (measureElement.getParentElement() == null) {
+			RootPanel.getBodyElement().appendChild(measureElement);
+		}
+		return measureElement;
+	}
+
+	private static String key(String fontFamily, int fontSize, String text) {
+		return fontFamily + '\u0000' + fontSize + '\u0000' + text;
+	}
+}
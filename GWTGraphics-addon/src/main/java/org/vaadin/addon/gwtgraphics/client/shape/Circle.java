@@ -15,8 +15,12 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape;
 
+import org.vaadin.addon.gwtgraphics.client.Bounds;
 import org.vaadin.addon.gwtgraphics.client.Shape;
 import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PropertyStore;
+
+import com.google.gwt.dom.client.Element;
 
 /**
  * Circle represents a circle.
@@ -25,6 +29,8 @@ import org.vaadin.addon.gwtgraphics.client.VectorObject;
  */
 public class Circle extends Shape {
 
+	private static final int R = PropertyStore.key("r");
+
 	/**
 	 * Creates a new Circle with the given position and radius properties.
 	 * 
@@ -42,11 +48,36 @@ public class Circle extends Shape {
 		setPosition(x, y);
 	}
 
+	/**
+	 * Creates a Circle rendered by the given element without setting any of
+	 * its properties, for a
+	 * {@link org.vaadin.addon.gwtgraphics.client.Stamp.Factory}. A new element
+	 * is created if it is null.
+	 *
+	 * @param element
+	 *            the element of the circle, or null
+	 */
+	public Circle(Element element) {
+		super(element);
+	}
+
 	@Override
-	public boolean contains(int clientX, int clientY) {
-		return (Math.pow(clientX-getX(), 2)/Math.pow(getRadius(), 2)+Math.pow(clientY-getY(), 2)/Math.pow
-				(getRadius(), 2))<=1;
+	protected boolean containsLocal(double x, double y) {
+		double r = getRadius();
+		double tolerance = getStrokeHitTolerance();
+		double d2 = x * x + y * y;
+		double outer = r + tolerance;
+		if (d2 > outer * outer) {
+			return false;
+		}
+		double inner = r - tolerance;
+		return isFilled() || inner <= 0 || d2 >= inner * inner;
+	}
 
+	@Override
+	protected Bounds getLocalBounds() {
+		double r = getRadius();
+		return new Bounds(-r, -r, r, r);
 	}
 
 	@Override
@@ -54,13 +85,18 @@ public class Circle extends Shape {
 		return Circle.class;
 	}
 
+	@Override
+	protected boolean isGeometryProperty(int key) {
+		return key == R;
+	}
+
 	/**
 	 * Returns the radius of the circle in pixels.
 	 * 
 	 * @return the radius of the circle in pixels
 	 */
 	public double getRadius() {
-		return getPropertyDouble("r");
+		return getPropertyDouble(R, 0);
 	}
 
 	/**
@@ -70,7 +106,7 @@ public class Circle extends Shape {
 	 *            the radius of the circle in pixels
 	 */
 	public void setRadius(double radius) {
-		setProperty("r", radius);
+		setProperty(R, radius);
 	}
 
 	@Override
@@ -15,8 +15,12 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape;
 
+import org.vaadin.addon.gwtgraphics.client.Bounds;
 import org.vaadin.addon.gwtgraphics.client.Shape;
 import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PropertyStore;
+
+import com.google.gwt.dom.client.Element;
 
 /**
  * Ellipse represents an ellipse.
@@ -26,6 +30,11 @@ import org.vaadin.addon.gwtgraphics.client.VectorObject;
  */
 public class Ellipse extends Shape {
 
+	private static final int CX = PropertyStore.key("cx");
+	private static final int CY = PropertyStore.key("cy");
+	private static final int RX = PropertyStore.key("rx");
+	private static final int RY = PropertyStore.key("ry");
+
 	/**
 	 * Creates a new Ellipse with the given position and radius properties.
 	 * 
@@ -46,36 +55,73 @@ public class Ellipse extends Shape {
 	}
 
 	@Override
-	public boolean contains(int clientX, int clientY) {
-		return (Math.pow(clientX-getCX(), 2)/Math.pow(getRadiusX(), 2)+Math.pow(clientY-getCY(), 2)/Math.pow
-				(getRadiusY(), 2))<=1;
+	protected boolean containsLocal(double x, double y) {
+		double dx = x - getCX();
+		double dy = y - getCY();
+		double rx = getRadiusX();
+		double ry = getRadiusY();
+		double tolerance = getStrokeHitTolerance();
+		if (!inside(dx, dy, rx + tolerance, ry + tolerance)) {
+			return false;
+		}
+		return isFilled() || !inside(dx, dy, rx - tolerance, ry - tolerance);
+	}
 
+	private static boolean inside(double dx, double dy, double rx, double ry) {
+		if (rx <= 0 || ry <= 0) {
+			return false;
+		}
+		dx /= rx;
+		dy /= ry;
+		return dx * dx + dy * dy <= 1;
 	}
 
 	public void setCenter(double x, double y) {
-		setPropertyDouble("cx", x);
-		setPropertyDouble("cy", y);
+		setProperty(CX, x);
+		setProperty(CY, y);
 	}
 	
 	public double getCX() {
-		return getPropertyDouble("cx");
+		return getPropertyDouble(CX, 0);
 	}
 	
 	public double getCY() {
-		return getPropertyDouble("cy");
+		return getPropertyDouble(CY, 0);
 	}
 	
 	public void setRadius(double rx, double ry) {
-		setPropertyDouble("rx", rx);
-		setPropertyDouble("ry", ry);
+		setProperty(RX, rx);
+		setProperty(RY, ry);
 	}
 	
 	public double getRadiusX() {
-		return getPropertyDouble("rx");
+		return getPropertyDouble(RX, 0);
 	}
 	
 	public double getRadiusY() {
-		return getPropertyDouble("ry");
+		return getPropertyDouble(RY, 0);
+	}
+
+	@Override
+	protected Bounds getLocalBounds() {
+		double cx = getCX();
+		double cy = getCY();
+		double rx = getRadiusX();
+		double ry = getRadiusY();
+		return new Bounds(cx - rx, cy - ry, cx + rx, cy + ry);
+	}
+
+	/**
+	 * Creates an Ellipse rendered by the given element without setting any of
+	 * its properties, for a
+	 * {@link org.vaadin.addon.gwtgraphics.client.Stamp.Factory}. A new element
+	 * is created if it is null.
+	 *
+	 * @param element
+	 *            the element of the ellipse, or null
+	 */
+	public Ellipse(Element element) {
+		super(element);
 	}
 
 	@Override
@@ -83,6 +129,11 @@ public class Ellipse extends Shape {
 		return Ellipse.class;
 	}
 
+	@Override
+	protected boolean isGeometryProperty(int key) {
+		return key == CX || key == CY || key == RX || key == RY;
+	}
+
 	@Override
 	public String getSVGElementName() {
 		return "ellipse";
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.shape;
+
+import org.vaadin.addon.gwtgraphics.client.Bounds;
+import org.vaadin.addon.gwtgraphics.client.impl.util.FlattenedPath;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+
+/**
+ * PackedPath is a Path that stores its steps in {@link PathData}, a packed
+ * opcode array and a single coordinate array, instead of one PathStep object
+ * per step. Geometry, rendering and serialization read the arrays directly.
+ * <p>
+ * The PathStep API of Path is still available, but {@link #getStep(int)}
+ * and {@link #getSteps()} return copies: modifying a returned PathStep has
+ * no effect, use {@link #setStep(int, org.vaadin.addon.gwtgraphics.client.shape.path.PathStep)}
+ * instead.
+ * </p>
+ */
+public class PackedPath extends Path {
+
+	protected final PathData data;
+
+	/**
+	 * Creates a new PackedPath and sets its starting point at the given
+	 * position.
+	 *
+	 * @param x
+	 *            the x-coordinate position in pixels
+	 * @param y
+	 *            the y-coordinate position in pixels
+	 */
+	public PackedPath(double x, double y) {
+		this(new PathData(16));
+		data.moveTo(false, x, y);
+		geometryChanged();
+		issueRedraw(false);
+	}
+
+	/**
+	 * Creates a PackedPath using the given PathData, which should start with
+	 * an absolute moveTo step.
+	 *
+	 * @param data
+	 *            the path data
+	 */
+	public PackedPath(PathData data) {
+		super(data.asList());
+		this.data = data;
+	}
+
+	/**
+	 * Returns the PathData of this path. Call {@link #issueRedraw(boolean)}
+	 * after modifying it directly.
+	 *
+	 * @return the path data
+	 */
+	public PathData getPathData() {
+		return data;
+	}
+
+	@Override
+	public PackedPath clone() {
+		PackedPath p = new PackedPath(data.copy());
+		p.setRedrawingType(RedrawType.MANUAL);
+		return p;
+	}
+
+	@Override
+	protected void setSteps(PathData parsed) {
+		data.setAll(parsed);
+	}
+
+	/**
+	 * Draws a line from the current point to the given absolute point.
+	 *
+	 * @param x
+	 *            an absolute x-coordinate in pixels
+	 * @param y
+	 *            an absolute y-coordinate in pixels
+	 */
+	public void lineTo(double x, double y) {
+		data.lineTo(false, x, y);
+		stepsAppended(data.size() - 1);
+	}
+
+	/**
+	 * Draws lines through the given absolute points. Only the new steps are
+	 * written to the element, with a single redraw.
+	 *
+	 * @param xs
+	 *            the x-coordinates in pixels
+	 * @param ys
+	 *            the y-coordinates in pixels
+	 */
+	public void lineTo(double[] xs, double[] ys) {
+		int from = data.size();
+		data.lineTo(xs, ys);
+		stepsAppended(from);
+	}
+
+	@Override
+	public void visit(PathVisitor visitor) {
+		PathGeometry.visit(data, visitor);
+	}
+
+	@Override
+	protected void appendStepData(StringBuilder path) {
+		data.appendSVG(path, 0, data.size());
+	}
+
+	@Override
+	protected FlattenedPath flatten(double tolerance) {
+		return FlattenedPath.flatten(data, tolerance);
+	}
+
+	@Override
+	protected Bounds getLocalBounds() {
+		double[] b = PathGeometry.getBounds(data);
+		return b == null ? null : new Bounds(b[0], b[1], b[2], b[3]);
+	}
+}
@@ -16,19 +16,33 @@
 package org.vaadin.addon.gwtgraphics.client.shape;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.vaadin.addon.gwtgraphics.client.Bounds;
+import org.vaadin.addon.gwtgraphics.client.DrawingArea;
 import org.vaadin.addon.gwtgraphics.client.Shape;
 import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.impl.util.FlattenedPath;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathClipper;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathGeometry.PathVisitor;
+import org.vaadin.addon.gwtgraphics.client.impl.util.PathSimplifier;
+import org.vaadin.addon.gwtgraphics.client.impl.util.RelativePathWriter;
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGPathParser;
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
 import org.vaadin.addon.gwtgraphics.client.shape.path.Arc;
 import org.vaadin.addon.gwtgraphics.client.shape.path.ClosePath;
 import org.vaadin.addon.gwtgraphics.client.shape.path.CurveTo;
 import org.vaadin.addon.gwtgraphics.client.shape.path.LineTo;
 import org.vaadin.addon.gwtgraphics.client.shape.path.MoveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
 import org.vaadin.addon.gwtgraphics.client.shape.path.PathStep;
+import org.vaadin.addon.gwtgraphics.client.transform.MatrixTransform;
 
-import com.google.gwt.core.client.Scheduler;
-import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Widget;
 
 /**
  * Path represents a path consisting of pen movement commands. Currently,
@@ -54,6 +68,8 @@ import com.google.gwt.core.client.Scheduler.ScheduledCommand;
  * path.removeStep(3);
  * </pre>
  *
+ * For paths with a large number of steps, see {@link PackedPath}.
+ *
  * @author Henri Kerola
  *
  */
@@ -64,7 +80,7 @@ public class Path extends Shape implements Cloneable {
 	 * <code>AUTO</code>(default): path is automatically being redrawn on change<br/>
 	 * <code>MANUAL</code>: user has to explicitly call
 	 * <code>issueRedraw(true)</code><br/>
-	 * <code>DEFERRED</code>: redraw is deffered
+	 * <code>DEFERRED</code>: redraw is deferred to the next animation frame
 	 */
 	public enum RedrawType {
 		AUTO, MANUAL, DEFERRED
@@ -77,13 +93,82 @@ public class Path extends Shape implements Cloneable {
 
 	/**
 	 * Defines if deffered redraw was issued.
+	 *
+	 * @deprecated kept in sync with {@link #isRedrawPending()} for
+	 *             subclasses, which should use that method instead
 	 */
+	@Deprecated
 	protected boolean deferredDrawPending = false;
 
 	protected final List<PathStep> steps;
 
 	protected boolean antialias = true;
 
+	/**
+	 * Path data last written to the element, and the path data of the steps
+	 * appended after that. Appending steps only formats the new text.
+	 */
+	protected String renderedPathData;
+	protected StringBuilder appendedPathData = new StringBuilder();
+
+	/**
+	 * True if the steps have changed other than by appending, so that the
+	 * whole path data has to be written on the next redraw.
+	 */
+	protected boolean pathDataDirty = true;
+
+	/**
+	 * Incremented whenever the steps may have changed.
+	 */
+	protected int version;
+
+	/**
+	 * Flattened geometry used for hit testing and the version it was built
+	 * from.
+	 */
+	protected FlattenedPath flattened;
+	protected int flattenedVersion;
+
+	/**
+	 * Maximum deviation of the flattened geometry from the exact one.
+	 */
+	protected static final double FLATTENING_TOLERANCE = 0.25;
+
+	/**
+	 * Maximum on-screen deviation in pixels of the simplified path data from
+	 * the exact one, or 0 if the path data is not simplified.
+	 */
+	protected double simplificationTolerance;
+
+	/**
+	 * Simplified steps by level of detail and the version they were built
+	 * from. Level <code>n</code> is simplified with a tolerance of
+	 * <code>2^n</code> in the coordinates of the path.
+	 */
+	protected Map<Integer, PathData> simplifiedSteps;
+	protected int simplifiedVersion;
+
+	/**
+	 * The level of detail last written to the element.
+	 */
+	protected int renderedLevel = Integer.MIN_VALUE;
+
+	/**
+	 * True if the path data is written with relative coordinates.
+	 */
+	protected boolean relativePathData;
+
+	/**
+	 * True if the path data is clipped to the visible area of the
+	 * DrawingArea.
+	 */
+	protected boolean clipToView;
+
+	/**
+	 * The local rectangle the path data last written to the element was
+	 * clipped to, or null if it was not clipped.
+	 */
+	protected Bounds clipBounds;
 
 	/**
 	 * Creates a new Path and sets its starting point at the given position.
@@ -98,6 +183,20 @@ public class Path extends Shape implements Cloneable {
 		moveTo(x, y);
 	}
 
+	/**
+	 * Creates a Path rendered by the given element without setting any of
+	 * its properties, for a
+	 * {@link org.vaadin.addon.gwtgraphics.client.Stamp.Factory}. A new element
+	 * is created if it is null.
+	 *
+	 * @param element
+	 *            the element of the path, or null
+	 */
+	public Path(Element element) {
+		super(element);
+		steps = new ArrayList<PathStep>(10);
+	}
+
 	/**
 	 * Creates an empty path with initial path step capacity. Useful when
 	 * cloning the path. Only to be used by cloning and extended classes when
@@ -107,7 +206,17 @@ public class Path extends Shape implements Cloneable {
 	 *            inicial capacity of <code>steps</code> list.
 	 */
 	protected Path(int capacity) {
-		steps = new ArrayList<PathStep>(capacity);
+		this(new ArrayList<PathStep>(capacity));
+	}
+
+	/**
+	 * Creates an empty path storing its steps in the given list.
+	 *
+	 * @param steps
+	 *            the list of steps
+	 */
+	protected Path(List<PathStep> steps) {
+		this.steps = steps;
 		setAntialising(true);
 	}
 
@@ -127,6 +236,50 @@ public class Path extends Shape implements Cloneable {
 
 	}
 
+	/**
+	 * Creates a Path from SVG path data, for example
+	 * <code>"M10 10 h 80 v 80 Q 50 50 10 90 z"</code>. All SVG path commands
+	 * are supported. The steps are stored packed, see {@link PackedPath}.
+	 *
+	 * @param d
+	 *            the SVG path data, starting with a move
+	 * @return the new path
+	 * @throws IllegalArgumentException
+	 *             if the path data is malformed
+	 */
+	public static Path fromSVGData(String d) {
+		PathData data = new PathData(Math.max(16, d.length() / 8));
+		SVGPathParser.parse(d, data);
+		return new PackedPath(data);
+	}
+
+	/**
+	 * Replaces the steps of this path with the given SVG path data. The path
+	 * is redrawn once, according to the redrawing type. Horizontal and
+	 * vertical lines are stored as {@link LineTo} steps and quadratic and
+	 * smooth curves as {@link CurveTo} steps.
+	 *
+	 * @param d
+	 *            the SVG path data, starting with a move
+	 * @throws IllegalArgumentException
+	 *             if the path data is malformed, in which case the path is
+	 *             not changed
+	 */
+	public void setSVGData(String d) {
+		PathData data = new PathData(Math.max(16, d.length() / 8));
+		SVGPathParser.parse(d, data);
+		setSteps(data);
+		issueRedraw(false);
+	}
+
+	/**
+	 * Replaces the steps with the given parsed steps.
+	 */
+	protected void setSteps(PathData data) {
+		steps.clear();
+		steps.addAll(data.asList());
+	}
+
 	public void setAntialising(boolean enable) {
 		antialias = enable;
 		if(enable) {
@@ -145,6 +298,42 @@ public class Path extends Shape implements Cloneable {
 		return Path.class;
 	}
 
+	@Override
+	protected void copyFrom(VectorObject template, boolean clonedElement) {
+		Path path = (Path) template;
+		steps.clear();
+		for (PathStep s : path.steps) {
+			steps.add(s.cloneStep());
+		}
+		redrawingType = path.redrawingType;
+		antialias = path.antialias;
+		simplificationTolerance = path.simplificationTolerance;
+		simplifiedSteps = null;
+		relativePathData = path.relativePathData;
+		clipToView = path.clipToView;
+		appendedPathData.setLength(0);
+		if (clonedElement) {
+			renderedPathData = path.renderedPathData;
+			renderedLevel = path.renderedLevel;
+			clipBounds = path.clipBounds;
+			pathDataDirty = path.pathDataDirty
+					|| path.appendedPathData.length() > 0;
+		} else {
+			renderedPathData = null;
+			pathDataDirty = true;
+		}
+		super.copyFrom(template, clonedElement);
+	}
+
+	/**
+	 * Also enables antialiasing again, as its property is removed.
+	 */
+	@Override
+	public void reset() {
+		super.reset();
+		antialias = true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -160,7 +349,7 @@ public class Path extends Shape implements Cloneable {
 	}
 
 	public boolean isDeferredDrawPending() {
-		return deferredDrawPending;
+		return isRedrawPending();
 	}
 
 	public void setRedrawingType(RedrawType redrawingType) {
@@ -180,6 +369,7 @@ public class Path extends Shape implements Cloneable {
 	@Override
 	public void setPosition(double x, double y) {
 		steps.set(0, new MoveTo(false, x, y));
+		stepsChanged();
 	}
 
 	/*
@@ -190,6 +380,7 @@ public class Path extends Shape implements Cloneable {
 	@Override
 	public void setX(double x) {
 		steps.set(0, new MoveTo(false, x, getY()));
+		stepsChanged();
 		issueRedraw(false);
 	}
 
@@ -202,6 +393,7 @@ public class Path extends Shape implements Cloneable {
 	@Override
 	public void setY(double y) {
 		steps.set(0, new MoveTo(false, getX(), y));
+		stepsChanged();
 		issueRedraw(false);
 	}
 
@@ -223,6 +415,7 @@ public class Path extends Shape implements Cloneable {
 					"The first step must be an absolute MoveTo step.");
 		} else {
 			steps.set(index, step);
+			stepsChanged();
 			issueRedraw(false);
 		}
 	}
@@ -245,19 +438,12 @@ public class Path extends Shape implements Cloneable {
 						.isRelativeCoords())) {
 			throw new IllegalArgumentException(
 					"The first step must be an absolute MoveTo step.");
+		} else if (index == steps.size()) {
+			addStep(step);
 		} else {
-			boolean appended = index == steps.size() - 1;
 			steps.add(index, step);
-
-			/*
-			 * If new step is being appended (is last element), it can be
-			 * redrawn immediately.
-			 */
-			if (appended) {
-				getImpl().getPathStepString(getElement(), step);
-			} else {
-				issueRedraw(false);
-			}
+			stepsChanged();
+			issueRedraw(false);
 		}
 	}
 
@@ -276,7 +462,7 @@ public class Path extends Shape implements Cloneable {
 					"The first step must be an absolute MoveTo step.");
 		} else {
 			steps.add(step);
-			getImpl().getPathStepString(getElement(), step);
+			stepsAppended(steps.size() - 1);
 		}
 	}
 
@@ -289,6 +475,7 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void removeStep(int index) {
 		steps.remove(index);
+		stepsChanged();
 		issueRedraw(false);
 	}
 
@@ -331,7 +518,6 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void moveTo(int x, int y) {
 		addStep(new MoveTo(false, x, y));
-		issueRedraw(false);
 	}
 
 	/**
@@ -344,7 +530,6 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void moveRelativelyTo(int x, int y) {
 		addStep(new MoveTo(true, x, y));
-		issueRedraw(false);
 	}
 
 	/**
@@ -357,7 +542,6 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void lineTo(int x, int y) {
 		addStep(new LineTo(false, x, y));
-		issueRedraw(false);
 	}
 
 	/**
@@ -370,7 +554,6 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void lineRelativelyTo(int x, int y) {
 		addStep(new LineTo(true, x, y));
-		issueRedraw(false);
 	}
 
 	/**
@@ -385,7 +568,6 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void curveTo(int x1, int y1, int x2, int y2, int x, int y) {
 		addStep(new CurveTo(false, x1, y1, x2, y2, x, y));
-		issueRedraw(false);
 	}
 
 	/**
@@ -400,19 +582,16 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void curveRelativelyTo(int x1, int y1, int x2, int y2, int x, int y) {
 		addStep(new CurveTo(true, x1, y1, x2, y2, x, y));
-		issueRedraw(false);
 	}
 
 	public void arc(int rx, int ry, int xAxisRotation, boolean largeArc,
 			boolean sweep, int x, int y) {
 		addStep(new Arc(false, rx, ry, xAxisRotation, largeArc, sweep, x, y));
-		issueRedraw(false);
 	}
 
 	public void arcRelatively(int rx, int ry, int xAxisRotation,
 			boolean largeArc, boolean sweep, int x, int y) {
 		addStep(new Arc(true, rx, ry, xAxisRotation, largeArc, sweep, x, y));
-		issueRedraw(false);
 	}
 
 	/**
@@ -420,38 +599,94 @@ public class Path extends Shape implements Cloneable {
 	 */
 	public void close() {
 		addStep(new ClosePath());
-		issueRedraw(false);
 	}
 
+	/**
+	 * Writes the path data to the element. If steps have only been appended
+	 * since the last redraw, just their text is formatted and added to the
+	 * data written before. The whole data is still written to the element
+	 * and parsed again by the browser, so appending one step per redraw, as
+	 * <code>AUTO</code> does, costs time proportional to the length of the
+	 * path for each step.
+	 */
 	@Override
 	public void redraw() {
-		getImpl().drawPath(getElement(), steps);
+		deferredDrawPending = false;
+		if (clipBounds != null && !isClippable()) {
+			// filled or dashed since the data was clipped
+			pathDataDirty = true;
+		}
+		if (pathDataDirty || renderedPathData == null) {
+			if (isElementRendered()) {
+				renderedPathData = createPathData();
+				getImpl().setPathData(getElement(), renderedPathData);
+			}
+		} else if (appendedPathData.length() > 0) {
+			renderedPathData += appendedPathData.toString();
+			getImpl().setPathData(getElement(), renderedPathData);
+		}
+		appendedPathData.setLength(0);
+		pathDataDirty = false;
 		super.redraw();
 	}
 
-	// TODO, XXX: get rid of this crap
-	protected void drawPathDeferred() {
-		if (!deferredDrawPending) {
-			deferredDrawPending = true;
-			Scheduler.get().scheduleFinally(new ScheduledCommand() {
-				public void execute() {
-					deferredDrawPending = false;
-					redraw();
-				}
-			});
+	/**
+	 * Must be called when steps have been changed other than by appending.
+	 */
+	protected void stepsChanged() {
+		pathDataDirty = true;
+		geometryChanged();
+	}
+
+	/**
+	 * Called after steps have been added to the end of the path. Only the
+	 * path data of the new steps is written to the element: immediately for
+	 * <code>AUTO</code>, once per animation frame for <code>DEFERRED</code>
+	 * and on the next redraw for <code>MANUAL</code>.
+	 *
+	 * @param from
+	 *            the index of the first appended step
+	 */
+	protected void stepsAppended(int from) {
+		geometryChanged();
+		if (!isElementRendered()) {
+			scheduleCanvasRepaint();
+			return;
 		}
+		if (simplificationTolerance > 0 || clipToView || relativePathData) {
+			pathDataDirty = true;
+		} else if (!pathDataDirty) {
+			for (int i = from; i < steps.size(); i++) {
+				appendedPathData.append(getImpl().getPathStepString(
+						steps.get(i)));
+			}
+		}
+		if (redrawingType == RedrawType.AUTO) {
+			redraw();
+		} else if (redrawingType == RedrawType.DEFERRED) {
+			scheduleRedraw();
+		}
+	}
+
+	protected void drawPathDeferred() {
+		scheduleRedraw();
+		deferredDrawPending = isRedrawPending();
 	}
 
 	/**
 	 * Issues new redraw request. If {@link #redrawingType} is set
-	 * <code>DEFERRED</code>, a new deferred call is issued instead. Note that,
-	 * if there is already deferred request pending, a new one will be ignored.
+	 * <code>DEFERRED</code>, the redraw is scheduled for the next animation
+	 * frame instead. Note that, if there is already deferred request pending,
+	 * a new one will be ignored. The whole path data is rewritten, so steps
+	 * modified in place are picked up.
 	 *
 	 * @param redrawIfManual
 	 *            if <code>true</code> path will be redraw even if
 	 *            {@link #redrawingType} is set to <code>MANUAL</code>
 	 */
 	public void issueRedraw(boolean redrawIfManual) {
+		// steps may have been modified in place
+		stepsChanged();
 		if (redrawingType == RedrawType.DEFERRED) {
 			drawPathDeferred();
 		} else if (redrawIfManual || redrawingType == RedrawType.AUTO) {
@@ -459,6 +694,288 @@ public class Path extends Shape implements Cloneable {
 		}
 	}
 
+	@Override
+	protected void geometryChanged() {
+		version++;
+		super.geometryChanged();
+	}
+
+	/**
+	 * Sets the maximum on-screen deviation in pixels of the path data written
+	 * to the element from the exact path. Runs of line segments are then
+	 * simplified with a tolerance matching the current scale of the path and
+	 * its enclosing Groups, so zoomed out paths have fewer vertices and
+	 * zooming back in restores the detail. Simplifications are cached per
+	 * power-of-two tolerance until the path changes. Hit testing, bounds and
+	 * canvas rendering always use the exact path. The default is 0, which
+	 * disables the simplification.
+	 *
+	 * @param pixels
+	 *            the tolerance in pixels, or 0 to disable
+	 */
+	public void setSimplificationTolerance(double pixels) {
+		if (pixels != simplificationTolerance) {
+			simplificationTolerance = Math.max(0, pixels);
+			simplifiedSteps = null;
+			renderedLevel = Integer.MIN_VALUE;
+			pathDataDirty = true;
+			scheduleRedraw();
+		}
+	}
+
+	public double getSimplificationTolerance() {
+		return simplificationTolerance;
+	}
+
+	/**
+	 * Sets whether the path data written to the element uses relative
+	 * coordinates, which makes it considerably shorter for paths with many
+	 * nearby points. Appending steps then rewrites the whole path data. The
+	 * default is false.
+	 *
+	 * @param relative
+	 *            true to write relative coordinates
+	 */
+	public void setRelativePathData(boolean relative) {
+		if (relative != relativePathData) {
+			relativePathData = relative;
+			pathDataDirty = true;
+			scheduleRedraw();
+		}
+	}
+
+	public boolean isRelativePathData() {
+		return relativePathData;
+	}
+
+	/**
+	 * Sets whether the path data written to the element is clipped to the
+	 * visible area of the DrawingArea. Line segments outside the area are
+	 * then replaced by moves, which keeps the data small and the coordinates
+	 * moderate for paths extending far outside the view. The data is clipped
+	 * to a margin around the view and clipped again only when the view
+	 * leaves the margin. Clipping is not applied to filled paths, as it does
+	 * not preserve the filled area, nor to paths with a dashed stroke, as the
+	 * dash pattern would restart at the margin. The default is false.
+	 *
+	 * @param clip
+	 *            true to clip the path data to the view
+	 */
+	public void setClipToView(boolean clip) {
+		if (clip != clipToView) {
+			clipToView = clip;
+			pathDataDirty = true;
+			scheduleRedraw();
+		}
+	}
+
+	public boolean isClipToView() {
+		return clipToView;
+	}
+
+	/**
+	 * Returns true if the path data can be clipped without changing what is
+	 * painted, i.e. the path is neither filled nor dashed.
+	 */
+	protected boolean isClippable() {
+		if (isFilled()) {
+			return false;
+		}
+		String dashes = getProperty("stroke-dasharray");
+		return (stroke == null || stroke.getDashArray().isEmpty())
+				&& (dashes == null || "none".equals(dashes));
+	}
+
+	/**
+	 * Rewrites the path data if the scale has changed enough to require
+	 * another level of detail, or if the view is no longer covered by the
+	 * clipped path data.
+	 */
+	@Override
+	protected void viewChanged() {
+		if (renderedPathData == null) {
+			return;
+		}
+		boolean changed = simplificationTolerance > 0
+				&& getLevelOfDetail() != renderedLevel;
+		if (!changed && clipToView) {
+			if (clipBounds == null) {
+				changed = isClippable() && getDrawingArea() != null;
+			} else if (!isClippable()) {
+				changed = true;
+			} else {
+				Bounds view = getViewBounds();
+				// clip again when zoomed in, to drop the segments now outside
+				changed = view == null || !clipBounds.contains(view)
+						|| clipBounds.getWidth() > 4 * view.getWidth()
+						|| clipBounds.getHeight() > 4 * view.getHeight();
+			}
+		}
+		if (changed) {
+			pathDataDirty = true;
+			scheduleRedraw();
+		}
+	}
+
+	/**
+	 * Returns the visible area of the DrawingArea in the coordinates of this
+	 * path, or null if the path is not in a DrawingArea.
+	 */
+	protected Bounds getViewBounds() {
+		DrawingArea area = getDrawingArea();
+		if (area == null) {
+			return null;
+		}
+		return areaToLocal(new Bounds(0, 0, area.getWidth(), area.getHeight()));
+	}
+
+	/**
+	 * Returns the path data for the element, simplified and clipped as
+	 * configured.
+	 */
+	protected String createPathData() {
+		int level = simplificationTolerance > 0 ? getLevelOfDetail()
+				: Integer.MIN_VALUE;
+		renderedLevel = level;
+		PathData simplified = level == Integer.MIN_VALUE ? null
+				: getSimplifiedSteps(level);
+		clipBounds = null;
+		if (clipToView && isClippable()) {
+			Bounds view = getViewBounds();
+			if (view != null) {
+				double margin = Math.max(view.getWidth(), view.getHeight()) / 2;
+				clipBounds = view.expand(margin + getStrokeHitTolerance());
+				return getImpl().getPathData(
+						simplified != null ? PathClipper.clip(simplified,
+								clipBounds) : PathClipper.clip(this, clipBounds),
+						relativePathData);
+			}
+		}
+		return simplified != null ? getImpl().getPathData(simplified,
+				relativePathData) : getImpl().getPathData(this);
+	}
+
+	/**
+	 * Returns the level of detail for the current scale, or
+	 * <code>Integer.MIN_VALUE</code> if the path data should not be
+	 * simplified.
+	 */
+	protected int getLevelOfDetail() {
+		double det = 1;
+		for (Widget w = this; w instanceof VectorObject; w = w.getParent()) {
+			MatrixTransform t = ((VectorObject) w).getTransform();
+			det *= Math.abs(t.getA() * t.getD() - t.getB() * t.getC());
+		}
+		double tolerance = simplificationTolerance / Math.sqrt(det);
+		if (det == 0 || Double.isNaN(tolerance) || Double.isInfinite(tolerance)) {
+			return Integer.MIN_VALUE;
+		}
+		// round down, so that the deviation never exceeds the tolerance
+		return (int) Math.floor(Math.log(tolerance) / Math.log(2));
+	}
+
+	/**
+	 * Returns the steps simplified for the given level of detail.
+	 */
+	protected PathData getSimplifiedSteps(int level) {
+		if (simplifiedSteps == null || simplifiedVersion != version) {
+			simplifiedSteps = new HashMap<Integer, PathData>();
+			simplifiedVersion = version;
+		}
+		PathData data = simplifiedSteps.get(level);
+		if (data == null) {
+			data = PathSimplifier.simplify(this, Math.pow(2, level));
+			simplifiedSteps.put(level, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Returns a number that changes whenever the steps of this path change.
+	 * Modifying a PathStep in place is noticed on the next
+	 * {@link #issueRedraw(boolean)}.
+	 *
+	 * @return the version of the path geometry
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the steps approximated by polylines. The result is cached
+	 * until the path changes.
+	 *
+	 * @return the flattened path
+	 */
+	public FlattenedPath getFlattened() {
+		if (flattened == null || flattenedVersion != version) {
+			flattened = flatten(FLATTENING_TOLERANCE);
+			flattenedVersion = version;
+		}
+		return flattened;
+	}
+
+	protected FlattenedPath flatten(double tolerance) {
+		return FlattenedPath.flatten(steps, tolerance);
+	}
+
+	/**
+	 * Walks the steps of this path in absolute coordinates.
+	 *
+	 * @param visitor
+	 *            receives the segments
+	 */
+	public void visit(PathVisitor visitor) {
+		PathGeometry.visit(steps, visitor);
+	}
+
+	/**
+	 * Appends the SVG path data of the steps, each preceded by a space. Uses
+	 * relative coordinates if {@link #setRelativePathData(boolean)} is set.
+	 *
+	 * @param path
+	 *            the path data being built
+	 */
+	public void appendPathData(StringBuilder path) {
+		if (relativePathData) {
+			visit(new RelativePathWriter(path));
+		} else {
+			appendStepData(path);
+		}
+	}
+
+	/**
+	 * Appends the SVG path data of the steps as they are stored.
+	 *
+	 * @param path
+	 *            the path data being built
+	 */
+	protected void appendStepData(StringBuilder path) {
+		for (PathStep step : steps) {
+			SVGUtil.appendPathStep(path, step);
+		}
+	}
+
+	/**
+	 * Hit tests the filled area using the fill-rule property and the stroke
+	 * of all sub-paths, including open ones.
+	 */
+	@Override
+	protected boolean containsLocal(double x, double y) {
+		FlattenedPath f = getFlattened();
+		if (isFilled() && f.contains(x, y, "evenodd".equals(getProperty("fill-rule")))) {
+			return true;
+		}
+		double t = getStrokeHitTolerance();
+		return t > 0 && f.isNearOutline(x, y, t);
+	}
+
+	@Override
+	protected Bounds getLocalBounds() {
+		double[] b = PathGeometry.getBounds(steps);
+		return b == null ? null : new Bounds(b[0], b[1], b[2], b[3]);
+	}
+
 	@Override
 	public String getSVGElementName() {
 		return "path";
@@ -18,6 +18,8 @@ package org.vaadin.addon.gwtgraphics.client.shape;
 import org.vaadin.addon.gwtgraphics.client.Shape;
 import org.vaadin.addon.gwtgraphics.client.VectorObject;
 
+import com.google.gwt.dom.client.Element;
+
 /**
  * Rectangle represents a rectangle.
  *
@@ -26,6 +28,8 @@ import org.vaadin.addon.gwtgraphics.client.VectorObject;
  */
 public class Rectangle extends Shape {
 
+	protected int roundedCorners;
+
 	/**
 	 * Creates a new Rectangle with the given position and size properties.
 	 *
@@ -45,18 +49,42 @@ public class Rectangle extends Shape {
 		setSize(width, height);
 	}
 
+	/**
+	 * Creates a Rectangle rendered by the given element without setting any of
+	 * its properties, for a
+	 * {@link org.vaadin.addon.gwtgraphics.client.Stamp.Factory}. A new element
+	 * is created if it is null.
+	 *
+	 * @param element
+	 *            the element of the rectangle, or null
+	 */
+	public Rectangle(Element element) {
+		super(element);
+	}
+
 	@Override
 	protected Class<? extends VectorObject> getType() {
 		return Rectangle.class;
 	}
 
+	@Override
+	protected void copyFrom(VectorObject template, boolean clonedElement) {
+		int radius = ((Rectangle) template).roundedCorners;
+		if (clonedElement) {
+			roundedCorners = radius;
+		} else {
+			setRoundedCorners(radius);
+		}
+		super.copyFrom(template, clonedElement);
+	}
+
 	/**
 	 * Gets the radius of rounded corners in pixels.
 	 *
 	 * @return radius of rounded corners in pixels
 	 */
 	public int getRoundedCorners() {
-		return getImpl().getRectangleRoundedCorners(getElement());
+		return roundedCorners;
 	}
 
 	/**
@@ -70,7 +98,41 @@ public class Rectangle extends Shape {
 		if (radius < 0) {
 			radius = 0;
 		}
-		getImpl().setRectangleRoundedCorners(getElement(), radius);
+		roundedCorners = radius;
+		if (!isHeadless()) {
+			getImpl().setRectangleRoundedCorners(getElement(), radius);
+		}
+	}
+
+	@Override
+	protected boolean containsLocal(double x, double y) {
+		double w = getWidth();
+		double h = getHeight();
+		double r = Math.min(roundedCorners, Math.min(w, h) / 2);
+		double t = getStrokeHitTolerance();
+		if (!inside(x, y, -t, -t, w + t, h + t, r > 0 ? r + t : 0)) {
+			return false;
+		}
+		return isFilled() || !inside(x, y, t, t, w - t, h - t, Math.max(0, r - t));
+	}
+
+	/**
+	 * Tests a point against a rectangle with rounded corners.
+	 */
+	private static boolean inside(double x, double y, double x0, double y0,
+			double x1, double y1, double r) {
+		if (x < x0 || x > x1 || y < y0 || y > y1) {
+			return false;
+		}
+		if (r <= 0) {
+			return true;
+		}
+		// distance to the center of the nearest corner arc
+		double cx = Math.max(x0 + r, Math.min(x, x1 - r));
+		double cy = Math.max(y0 + r, Math.min(y, y1 - r));
+		double dx = x - cx;
+		double dy = y - cy;
+		return dx * dx + dy * dy <= r * r;
 	}
 
 	@Override
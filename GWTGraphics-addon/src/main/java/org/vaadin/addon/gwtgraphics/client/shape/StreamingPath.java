@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.shape;
+
+import org.vaadin.addon.gwtgraphics.client.shape.path.MoveTo;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+
+/**
+ * StreamingPath is a polyline for live data. Points are appended with
+ * {@link #append(double, double)}, and only the text of the new segments is
+ * formatted and added to the element's path data, once per animation frame.
+ * With a window size set, the oldest points are dropped so that the latest
+ * points are kept.
+ * <p>
+ * Points are dropped once the window is exceeded by a quarter, and only then
+ * is the whole path data formatted again. The element's path data is still
+ * written and parsed whole on each frame, so the cost of a frame grows with
+ * the number of points kept. Without a window it grows for as long as the
+ * stream runs.
+ * </p>
+ */
+public class StreamingPath extends PackedPath {
+
+	protected int windowSize;
+
+	/**
+	 * Creates a StreamingPath without a window: all points are kept.
+	 *
+	 * @param x
+	 *            the x-coordinate of the first point in pixels
+	 * @param y
+	 *            the y-coordinate of the first point in pixels
+	 */
+	public StreamingPath(double x, double y) {
+		this(x, y, 0);
+	}
+
+	/**
+	 * Creates a StreamingPath keeping at most the given number of points.
+	 *
+	 * @param x
+	 *            the x-coordinate of the first point in pixels
+	 * @param y
+	 *            the y-coordinate of the first point in pixels
+	 * @param windowSize
+	 *            the number of points to keep, or 0 to keep all
+	 */
+	public StreamingPath(double x, double y, int windowSize) {
+		super(new PathData(Math.max(16, windowSize)));
+		this.windowSize = windowSize;
+		setRedrawingType(RedrawType.DEFERRED);
+		data.moveTo(false, x, y);
+		stepsChanged();
+		issueRedraw(false);
+	}
+
+	/**
+	 * Returns the number of points kept, or 0 if all points are kept.
+	 *
+	 * @return the window size
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Sets the number of points to keep.
+	 *
+	 * @param windowSize
+	 *            the number of points to keep, or 0 to keep all
+	 */
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+		if (windowSize > 0 && data.size() > windowSize) {
+			trim(data.size() - windowSize);
+		}
+	}
+
+	/**
+	 * Appends a point, drawing a line to it from the previous point.
+	 *
+	 * @param x
+	 *            the x-coordinate in pixels
+	 * @param y
+	 *            the y-coordinate in pixels
+	 */
+	public void append(double x, double y) {
+		lineTo(x, y);
+		trimToWindow();
+	}
+
+	/**
+	 * Appends several points at once.
+	 *
+	 * @param xs
+	 *            the x-coordinates in pixels
+	 * @param ys
+	 *            the y-coordinates in pixels
+	 */
+	public void append(double[] xs, double[] ys) {
+		lineTo(xs, ys);
+		trimToWindow();
+	}
+
+	private void trimToWindow() {
+		if (windowSize > 0 && data.size() > windowSize + windowSize / 4) {
+			trim(data.size() - windowSize);
+		}
+	}
+
+	/**
+	 * Drops the given number of leading points. The new first point becomes
+	 * the starting point of the path. Assumes that all steps are absolute
+	 * lines, as created by the append methods.
+	 */
+	protected void trim(int count) {
+		int o = data.getOffset(count);
+		double x = data.getCoords()[o];
+		double y = data.getCoords()[o + 1];
+		data.remove(0, count + 1);
+		data.insert(0, new MoveTo(false, x, y));
+		stepsChanged();
+		issueRedraw(false);
+	}
+}
@@ -15,8 +15,15 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vaadin.addon.gwtgraphics.client.Bounds;
 import org.vaadin.addon.gwtgraphics.client.Shape;
 import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.impl.util.TextMeasurer;
+
+import com.google.gwt.dom.client.Element;
 
 /**
  * Embed text into DrawingArea.
@@ -26,6 +33,10 @@ import org.vaadin.addon.gwtgraphics.client.VectorObject;
  */
 public class Text extends Shape {
 
+	protected String text;
+	protected String fontFamily;
+	protected int fontSize;
+
 	/**
 	 * Creates a new instance of Text. Position and the text to be rendered are
 	 * given as paramaters. Font family is set to "Arial" and font size to 20px.
@@ -44,18 +55,69 @@ public class Text extends Shape {
 		setFontSize(20);
 	}
 
+	/**
+	 * Creates a Text rendered by the given element without setting any of
+	 * its properties, for a
+	 * {@link org.vaadin.addon.gwtgraphics.client.Stamp.Factory}. A new element
+	 * is created if it is null.
+	 *
+	 * @param element
+	 *            the element of the text, or null
+	 */
+	public Text(Element element) {
+		super(element);
+	}
+
+	/**
+	 * Returns the text extent with the width measured by the
+	 * {@link TextMeasurer}. Without a browser the width is estimated as one
+	 * em per character, which is wider than the text in common fonts. The
+	 * extent is placed according to the <code>text-anchor</code> property.
+	 */
+	@Override
+	protected Bounds getLocalBounds() {
+		if (text == null || text.isEmpty()) {
+			return null;
+		}
+		double width = isHeadless() ? text.length() * fontSize
+				: getTextWidth();
+		String anchor = getProperty("text-anchor");
+		double x = 0;
+		if ("middle".equals(anchor)) {
+			x = -width / 2;
+		} else if ("end".equals(anchor)) {
+			x = -width;
+		}
+		return new Bounds(x, -fontSize, x + width, fontSize * 0.25);
+	}
+
 	@Override
 	protected Class<? extends VectorObject> getType() {
 		return Text.class;
 	}
 
+	@Override
+	protected void copyFrom(VectorObject template, boolean clonedElement) {
+		Text t = (Text) template;
+		if (clonedElement) {
+			text = t.text;
+			fontFamily = t.fontFamily;
+			fontSize = t.fontSize;
+		} else {
+			setText(t.text);
+			setFontFamily(t.fontFamily);
+			setFontSize(t.fontSize);
+		}
+		super.copyFrom(template, clonedElement);
+	}
+
 	/**
 	 * Returns the rendered text.
 	 * 
 	 * @return the rendered text
 	 */
 	public String getText() {
-		return getImpl().getText(getElement());
+		return text;
 	}
 
 	/**
@@ -65,7 +127,11 @@ public class Text extends Shape {
 	 *            the text
 	 */
 	public void setText(String text) {
-		getImpl().setText(getElement(), text, isAttached());
+		this.text = text;
+		geometryChanged();
+		if (!isHeadless()) {
+			getImpl().setText(getElement(), text, isAttached());
+		}
 	}
 
 	/**
@@ -74,7 +140,7 @@ public class Text extends Shape {
 	 * @return the font family
 	 */
 	public String getFontFamily() {
-		return getImpl().getTextFontFamily(getElement());
+		return fontFamily;
 	}
 
 	/**
@@ -84,7 +150,11 @@ public class Text extends Shape {
 	 *            the font family
 	 */
 	public void setFontFamily(String family) {
-		getImpl().setTextFontFamily(getElement(), family, isAttached());
+		fontFamily = family;
+		geometryChanged();
+		if (!isHeadless()) {
+			getImpl().setTextFontFamily(getElement(), family, isAttached());
+		}
 	}
 
 	/**
@@ -93,7 +163,7 @@ public class Text extends Shape {
 	 * @return the size
 	 */
 	public int getFontSize() {
-		return getImpl().getTextFontSize(getElement());
+		return fontSize;
 	}
 
 	/**
@@ -103,7 +173,11 @@ public class Text extends Shape {
 	 *            the size
 	 */
 	public void setFontSize(int size) {
-		getImpl().setTextFontSize(getElement(), size, isAttached());
+		fontSize = size;
+		geometryChanged();
+		if (!isHeadless()) {
+			getImpl().setTextFontSize(getElement(), size, isAttached());
+		}
 	}
 
 	/**
@@ -112,7 +186,7 @@ public class Text extends Shape {
 	 * @return the width of the rendered text in pixels
 	 */
 	public int getTextWidth() {
-		return getImpl().getTextWidth(getElement());
+		return TextMeasurer.get().getWidth(text, fontFamily, fontSize);
 	}
 
 	/**
@@ -121,7 +195,31 @@ public class Text extends Shape {
 	 * @return the height of the rendered text in pixels
 	 */
 	public int getTextHeight() {
-		return getImpl().getTextHeight(getElement());
+		if (text == null || text.isEmpty()) {
+			return 0;
+		}
+		return TextMeasurer.get().getHeight(fontFamily, fontSize);
+	}
+
+	/**
+	 * Returns the widths of the given Texts in pixels. Texts whose width is
+	 * not cached yet are measured in a single layout pass.
+	 *
+	 * @param texts
+	 *            the Texts to measure
+	 * @return the widths in the same order
+	 */
+	public static int[] measureTexts(List<Text> texts) {
+		List<String> strings = new ArrayList<String>(texts.size());
+		List<String> families = new ArrayList<String>(texts.size());
+		int[] sizes = new int[texts.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			Text t = texts.get(i);
+			strings.add(t.text);
+			families.add(t.fontFamily);
+			sizes[i] = t.fontSize;
+		}
+		return TextMeasurer.get().getWidths(strings, families, sizes);
 	}
 
 	/*
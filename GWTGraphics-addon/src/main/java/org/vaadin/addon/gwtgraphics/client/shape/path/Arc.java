@@ -15,6 +15,8 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape.path;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+
 /**
  * This class represents an arc step.
  *
@@ -86,9 +88,9 @@ public class Arc extends LineTo {
 
 	@Override
 	public String toSVGString() {
-		return isRelativeCoords() ? "a" : "A" + getRx() + "," + getRy() + " "
-				+ getxAxisRotation() + " " + (isLargeArc() ? "1" : "0") + ","
-				+ (isSweep() ? "1" : "0") + " " + getX() + "," + getY();
+		StringBuilder path = new StringBuilder();
+		SVGUtil.appendPathStep(path, this);
+		return path.substring(1);
 	}
 
 	@Override
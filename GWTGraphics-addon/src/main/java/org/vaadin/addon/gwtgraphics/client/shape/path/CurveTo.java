@@ -15,6 +15,8 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape.path;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+
 /**
  * This class represents Path's curveto step. Draws a cubic bezier curve from
  * the current point to (x, y). (x1, y1) is the control point for the beginning
@@ -78,8 +80,9 @@ public class CurveTo extends LineTo {
 
 	@Override
 	public String toSVGString() {
-		return isRelativeCoords() ? "c" : "C" + getX1() + " " + getY1() + " "
-				+ getX2() + " " + getY2() + " " + getX() + " " + getY();
+		StringBuilder path = new StringBuilder();
+		SVGUtil.appendPathStep(path, this);
+		return path.substring(1);
 	}
 
 	@Override
@@ -15,6 +15,8 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape.path;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+
 /**
  * This class represents Path's lineTo step. Draws a straight line from the
  * current point to a new point.
@@ -40,7 +42,9 @@ public class LineTo extends MoveTo {
 
 	@Override
 	public String toSVGString() {
-		return isRelativeCoords() ? "l" : "L" + getX() + " " + getY();
+		StringBuilder path = new StringBuilder();
+		SVGUtil.appendPathStep(path, this);
+		return path.substring(1);
 	}
 	
 	@Override
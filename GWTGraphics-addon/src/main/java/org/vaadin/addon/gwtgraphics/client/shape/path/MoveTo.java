@@ -15,6 +15,8 @@
  */
 package org.vaadin.addon.gwtgraphics.client.shape.path;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+
 /**
  * This class represents Path's moveTo step. The pen is lifted and moved to a
  * new location.
@@ -76,7 +78,9 @@ public class MoveTo extends ClosePath {
 
 	@Override
 	public String toSVGString() {
-		return isRelativeCoords() ? "m" : "M" + getX() + " " + getY();
+		StringBuilder path = new StringBuilder();
+		SVGUtil.appendPathStep(path, this);
+		return path.substring(1);
 	}
 
 	/**
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.shape.path;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+import org.vaadin.addon.gwtgraphics.client.impl.util.SVGUtil;
+
+/**
+ * Compact storage for path geometry: one opcode per step in an int array and
+ * the coordinates of all steps in a single double array. Steps can be read
+ * and modified as {@link PathStep} objects through {@link #asList()}, which
+ * creates a new PathStep on every read.
+ */
+public class PathData {
+
+	public static final int MOVE_TO = 0;
+	public static final int LINE_TO = 1;
+	public static final int CURVE_TO = 2;
+	public static final int ARC = 3;
+	public static final int CLOSE = 4;
+
+	/**
+	 * Flag set in the opcode of steps with relative coordinates.
+	 */
+	public static final int RELATIVE = 8;
+
+	private static final int TYPE_MASK = 7;
+
+	/**
+	 * Number of coordinates per step type. Arcs store rx, ry, x-axis
+	 * rotation, the large arc and sweep flags as 0 or 1, x and y.
+	 */
+	private static final int[] COORD_COUNT = { 2, 2, 6, 7, 0 };
+
+	protected int[] ops;
+	protected int[] offsets;
+	protected double[] coords;
+	protected int size;
+	protected int coordCount;
+
+	/**
+	 * Creates empty PathData.
+	 *
+	 * @param capacity
+	 *            the initial number of steps
+	 */
+	public PathData(int capacity) {
+		capacity = Math.max(capacity, 4);
+		ops = new int[capacity];
+		offsets = new int[capacity];
+		coords = new double[capacity * 2];
+	}
+
+	/**
+	 * Returns a copy of this PathData.
+	 */
+	public PathData copy() {
+		PathData copy = new PathData(size);
+		copy.setAll(this);
+		return copy;
+	}
+
+	/**
+	 * Replaces the steps with copies of the steps of the given PathData.
+	 */
+	public void setAll(PathData other) {
+		ensureSteps(other.size);
+		ensureCoords(other.coordCount);
+		System.arraycopy(other.ops, 0, ops, 0, other.size);
+		System.arraycopy(other.offsets, 0, offsets, 0, other.size);
+		System.arraycopy(other.coords, 0, coords, 0, other.coordCount);
+		size = other.size;
+		coordCount = other.coordCount;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the type of the given step, one of {@link #MOVE_TO},
+	 * {@link #LINE_TO}, {@link #CURVE_TO}, {@link #ARC} and {@link #CLOSE}.
+	 */
+	public int getType(int index) {
+		checkIndex(index);
+		return ops[index] & TYPE_MASK;
+	}
+
+	public boolean isRelative(int index) {
+		checkIndex(index);
+		return (ops[index] & RELATIVE) != 0;
+	}
+
+	/**
+	 * Returns the index of the first coordinate of the given step in
+	 * {@link #getCoords()}.
+	 */
+	public int getOffset(int index) {
+		checkIndex(index);
+		return offsets[index];
+	}
+
+	/**
+	 * Returns the coordinate buffer. Only the first
+	 * {@link #getCoordCount()} values are in use. The array must not be
+	 * modified and is replaced when the buffer grows.
+	 */
+	public double[] getCoords() {
+		return coords;
+	}
+
+	public int getCoordCount() {
+		return coordCount;
+	}
+
+	public void moveTo(boolean relative, double x, double y) {
+		int o = append(MOVE_TO, relative);
+		coords[o] = x;
+		coords[o + 1] = y;
+	}
+
+	public void lineTo(boolean relative, double x, double y) {
+		int o = append(LINE_TO, relative);
+		coords[o] = x;
+		coords[o + 1] = y;
+	}
+
+	/**
+	 * Appends absolute lines to the given points.
+	 *
+	 * @param xs
+	 *            the x-coordinates
+	 * @param ys
+	 *            the y-coordinates, at least as many as x-coordinates
+	 */
+	public void lineTo(double[] xs, double[] ys) {
+		int n = xs.length;
+		ensureSteps(size + n);
+		ensureCoords(coordCount + 2 * n);
+		int o = coordCount;
+		for (int i = 0; i < n; i++) {
+			ops[size] = LINE_TO;
+			offsets[size++] = o;
+			coords[o++] = xs[i];
+			coords[o++] = ys[i];
+		}
+		coordCount = o;
+	}
+
+	public void curveTo(boolean relative, double x1, double y1, double x2,
+			double y2, double x, double y) {
+		int o = append(CURVE_TO, relative);
+		coords[o] = x1;
+		coords[o + 1] = y1;
+		coords[o + 2] = x2;
+		coords[o + 3] = y2;
+		coords[o + 4] = x;
+		coords[o + 5] = y;
+	}
+
+	public void arcTo(boolean relative, double rx, double ry,
+			double xAxisRotation, boolean largeArc, boolean sweep, double x,
+			double y) {
+		int o = append(ARC, relative);
+		coords[o] = rx;
+		coords[o + 1] = ry;
+		coords[o + 2] = xAxisRotation;
+		coords[o + 3] = largeArc ? 1 : 0;
+		coords[o + 4] = sweep ? 1 : 0;
+		coords[o + 5] = x;
+		coords[o + 6] = y;
+	}
+
+	public void close() {
+		append(CLOSE, false);
+	}
+
+	/**
+	 * Appends the given step.
+	 */
+	public void add(PathStep step) {
+		insert(size, step);
+	}
+
+	/**
+	 * Inserts the given step at the given position.
+	 */
+	public void insert(int index, PathStep step) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		}
+		int type = typeOf(step);
+		int count = COORD_COUNT[type];
+		int o = index == size ? coordCount : offsets[index];
+		ensureSteps(size + 1);
+		ensureCoords(coordCount + count);
+		System.arraycopy(ops, index, ops, index + 1, size - index);
+		System.arraycopy(offsets, index, offsets, index + 1, size - index);
+		System.arraycopy(coords, o, coords, o + count, coordCount - o);
+		for (int i = index + 1; i <= size; i++) {
+			offsets[i] += count;
+		}
+		size++;
+		coordCount += count;
+		offsets[index] = o;
+		write(index, step);
+	}
+
+	/**
+	 * Replaces the step at the given position.
+	 */
+	public void set(int index, PathStep step) {
+		checkIndex(index);
+		if (typeOf(step) == (ops[index] & TYPE_MASK)) {
+			write(index, step);
+		} else {
+			remove(index);
+			insert(index, step);
+		}
+	}
+
+	/**
+	 * Removes the step at the given position.
+	 */
+	public void remove(int index) {
+		checkIndex(index);
+		int o = offsets[index];
+		int count = COORD_COUNT[ops[index] & TYPE_MASK];
+		System.arraycopy(ops, index + 1, ops, index, size - index - 1);
+		System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+		System.arraycopy(coords, o + count, coords, o, coordCount - o - count);
+		size--;
+		coordCount -= count;
+		for (int i = index; i < size; i++) {
+			offsets[i] -= count;
+		}
+	}
+
+	/**
+	 * Removes the steps in the given range.
+	 *
+	 * @param from
+	 *            the index of the first step to remove
+	 * @param to
+	 *            the index after the last step to remove
+	 */
+	public void remove(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Range: " + from + "-" + to
+					+ ", Size: " + size);
+		}
+		if (from == to) {
+			return;
+		}
+		int o = offsets[from];
+		int end = to == size ? coordCount : offsets[to];
+		int count = end - o;
+		System.arraycopy(ops, to, ops, from, size - to);
+		System.arraycopy(offsets, to, offsets, from, size - to);
+		System.arraycopy(coords, end, coords, o, coordCount - end);
+		size -= to - from;
+		coordCount -= count;
+		for (int i = from; i < size; i++) {
+			offsets[i] -= count;
+		}
+	}
+
+	public void clear() {
+		size = 0;
+		coordCount = 0;
+	}
+
+	/**
+	 * Returns the step at the given position as a new PathStep.
+	 */
+	public PathStep getStep(int index) {
+		checkIndex(index);
+		boolean relative = (ops[index] & RELATIVE) != 0;
+		int o = offsets[index];
+		switch (ops[index] & TYPE_MASK) {
+		case MOVE_TO:
+			return new MoveTo(relative, coords[o], coords[o + 1]);
+		case LINE_TO:
+			return new LineTo(relative, coords[o], coords[o + 1]);
+		case CURVE_TO:
+			return new CurveTo(relative, coords[o], coords[o + 1],
+					coords[o + 2], coords[o + 3], coords[o + 4], coords[o + 5]);
+		case ARC:
+			return new Arc(relative, coords[o], coords[o + 1], coords[o + 2],
+					coords[o + 3] != 0, coords[o + 4] != 0, coords[o + 5],
+					coords[o + 6]);
+		default:
+			return new ClosePath();
+		}
+	}
+
+	/**
+	 * Returns a modifiable List view of the steps. Reading creates new
+	 * PathSteps, so changing a returned step doesn't change this PathData.
+	 */
+	public List<PathStep> asList() {
+		return new AbstractList<PathStep>() {
+			@Override
+			public PathStep get(int index) {
+				return getStep(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public PathStep set(int index, PathStep step) {
+				PathStep old = getStep(index);
+				PathData.this.set(index, step);
+				return old;
+			}
+
+			@Override
+			public void add(int index, PathStep step) {
+				insert(index, step);
+			}
+
+			@Override
+			public PathStep remove(int index) {
+				PathStep old = getStep(index);
+				PathData.this.remove(index);
+				return old;
+			}
+
+			@Override
+			public void clear() {
+				PathData.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Appends the SVG path data of the steps in the given range, each
+	 * preceded by a space.
+	 *
+	 * @param path
+	 *            the path data being built
+	 * @param from
+	 *            the index of the first step
+	 * @param to
+	 *            the index after the last step
+	 */
+	public void appendSVG(StringBuilder path, int from, int to) {
+		for (int i = from; i < to; i++) {
+			int op = ops[i];
+			boolean relative = (op & RELATIVE) != 0;
+			int o = offsets[i];
+			switch (op & TYPE_MASK) {
+			case MOVE_TO:
+				path.append(relative ? " m" : " M");
+				SVGUtil.appendPoint(path, coords[o], ' ', coords[o + 1]);
+				break;
+			case LINE_TO:
+				path.append(relative ? " l" : " L");
+				SVGUtil.appendPoint(path, coords[o], ' ', coords[o + 1]);
+				break;
+			case CURVE_TO:
+				path.append(relative ? " c" : " C");
+				SVGUtil.appendPoint(path, coords[o], ' ', coords[o + 1]);
+				path.append(' ');
+				SVGUtil.appendPoint(path, coords[o + 2], ' ', coords[o + 3]);
+				path.append(' ');
+				SVGUtil.appendPoint(path, coords[o + 4], ' ', coords[o + 5]);
+				break;
+			case ARC:
+				path.append(relative ? " a" : " A");
+				SVGUtil.appendPoint(path, coords[o], ',', coords[o + 1]);
+				path.append(' ');
+				NumberUtil.append(path, coords[o + 2]);
+				path.append(' ').append(coords[o + 3] != 0 ? '1' : '0')
+						.append(',').append(coords[o + 4] != 0 ? '1' : '0');
+				path.append(' ');
+				SVGUtil.appendPoint(path, coords[o + 5], ',', coords[o + 6]);
+				break;
+			default:
+				path.append(" z");
+			}
+		}
+	}
+
+	private int append(int type, boolean relative) {
+		ensureSteps(size + 1);
+		ensureCoords(coordCount + COORD_COUNT[type]);
+		ops[size] = relative ? type | RELATIVE : type;
+		offsets[size++] = coordCount;
+		int o = coordCount;
+		coordCount += COORD_COUNT[type];
+		return o;
+	}
+
+	private void write(int index, PathStep step) {
+		int type = typeOf(step);
+		int o = offsets[index];
+		if (type == CLOSE) {
+			ops[index] = CLOSE;
+			return;
+		}
+		MoveTo m = (MoveTo) step;
+		ops[index] = m.isRelativeCoords() ? type | RELATIVE : type;
+		if (type == ARC) {
+			Arc a = (Arc) step;
+			coords[o++] = a.getRx();
+			coords[o++] = a.getRy();
+			coords[o++] = a.getxAxisRotation();
+			coords[o++] = a.isLargeArc() ? 1 : 0;
+			coords[o++] = a.isSweep() ? 1 : 0;
+		} else if (type == CURVE_TO) {
+			CurveTo c = (CurveTo) step;
+			coords[o++] = c.getX1();
+			coords[o++] = c.getY1();
+			coords[o++] = c.getX2();
+			coords[o++] = c.getY2();
+		}
+		coords[o] = m.getX();
+		coords[o + 1] = m.getY();
+	}
+
+	private static int typeOf(PathStep step) {
+		if (step instanceof Arc) {
+			return ARC;
+		} else if (step instanceof CurveTo) {
+			return CURVE_TO;
+		} else if (step instanceof LineTo) {
+			return LINE_TO;
+		} else if (step instanceof MoveTo) {
+			return MOVE_TO;
+		}
+		return CLOSE;
+	}
+
+	private void ensureSteps(int capacity) {
+		if (capacity > ops.length) {
+			int length = Math.max(capacity, ops.length * 2);
+			int[] o = new int[length];
+			int[] f = new int[length];
+			System.arraycopy(ops, 0, o, 0, size);
+			System.arraycopy(offsets, 0, f, 0, size);
+			ops = o;
+			offsets = f;
+		}
+	}
+
+	private void ensureCoords(int capacity) {
+		if (capacity > coords.length) {
+			double[] c = new double[Math.max(capacity, coords.length * 2)];
+			System.arraycopy(coords, 0, c, 0, coordCount);
+			coords = c;
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+
 public class Stroke {
 
 	public static enum LineCap {
@@ -28,6 +30,16 @@ public class Stroke {
 	protected double dashOffset = 0.0;
 	protected double opacity = 1.0;
 
+	/**
+	 * Incremented on every change, see {@link #getVersion()}.
+	 */
+	protected int version;
+
+	/**
+	 * Cached result of {@link #getSVGAttributes()}, null when outdated.
+	 */
+	protected String[] attributes;
+
 	public Stroke() {
 		this("black");
 	}
@@ -36,12 +48,32 @@ public class Stroke {
 		this.color = color == null ? "" : color;
 	}
 
+	/**
+	 * Restores the default values of all properties and sets the given
+	 * color, as if this Stroke had just been created.
+	 *
+	 * @param color
+	 *            the new color
+	 */
+	public void reset(String color) {
+		this.color = color == null ? "" : color;
+		dashArray = null;
+		lineCap = null;
+		lineJoin = null;
+		width = 1.0;
+		miterLimit = 4.0;
+		dashOffset = 0.0;
+		opacity = 1.0;
+		changed();
+	}
+
 	public void setDashArray(List<Double> values) {
 		if(dashArray == null) {
 			dashArray = new ArrayList<Double>();
 		}
 		dashArray.clear();
 		dashArray.addAll(values);
+		changed();
 	}
 
 	public void setDashArray(Double... values) {
@@ -63,6 +95,7 @@ public class Stroke {
 
 	public void setDashOffset(double offs) {
 		dashOffset = offs;
+		changed();
 	}
 
 	public double getDashOffset() {
@@ -71,6 +104,7 @@ public class Stroke {
 
 	public void setColor(String color) {
 		this.color = color == null ? "none" : color;
+		changed();
 	}
 
 	public String getColor() {
@@ -79,6 +113,7 @@ public class Stroke {
 
 	public void setMiterLimit(double limit) {
 		miterLimit = limit;
+		changed();
 	}
 
 	public double getMiterLimit() {
@@ -87,6 +122,7 @@ public class Stroke {
 
 	public void setLineCap(LineCap c) {
 		lineCap = c;
+		changed();
 	}
 
 	public LineCap getLineCap() {
@@ -95,6 +131,7 @@ public class Stroke {
 
 	public void setLineJoin(LineJoin j) {
 		lineJoin = j;
+		changed();
 	}
 
 	public LineJoin getLineJoin() {
@@ -103,6 +140,7 @@ public class Stroke {
 
 	public void setLineWidth(double w) {
 		width = w;
+		changed();
 	}
 
 	public double getLineWidth() {
@@ -111,12 +149,74 @@ public class Stroke {
 
 	public void setOpacity(double o) {
 		opacity = Math.max(1, Math.min(0, o));
+		changed();
 	}
 
 	public double getOpacity() {
 		return opacity;
 	}
 
+	/**
+	 * Returns the version of this Stroke. The version changes every time a
+	 * property of the Stroke is modified.
+	 *
+	 * @return current version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the SVG attributes of this Stroke as name-value pairs. The array
+	 * is computed once after each change and shared by all objects using
+	 * this Stroke, so it must not be modified.
+	 *
+	 * @return an array of alternating attribute names and values
+	 */
+	public String[] getSVGAttributes() {
+		if (attributes == null) {
+			List<String> a = new ArrayList<String>(16);
+			a.add("stroke");
+			a.add(color);
+			a.add("stroke-width");
+			a.add(NumberUtil.format(width));
+			a.add("stroke-opacity");
+			a.add(NumberUtil.format(opacity));
+			a.add("stroke-miterlimit");
+			a.add(NumberUtil.format(miterLimit));
+			if(lineCap != null) {
+				a.add("stroke-linecap");
+				a.add(lineCap.toString().toLowerCase());
+			}
+			if(lineJoin != null) {
+				a.add("stroke-linejoin");
+				a.add(lineJoin.toString().toLowerCase());
+			}
+			if(dashArray != null && !dashArray.isEmpty()) {
+				StringBuilder dashes = new StringBuilder();
+				for(Double d : dashArray) {
+					if(dashes.length() > 0) {
+						dashes.append(',');
+					}
+					NumberUtil.append(dashes, d.doubleValue());
+				}
+				a.add("stroke-dasharray");
+				a.add(dashes.toString());
+				if(dashOffset != 0.0) {
+					a.add("stroke-dashoffset");
+					a.add(NumberUtil.format(dashOffset));
+				}
+			}
+			attributes = a.toArray(new String[a.size()]);
+		}
+		return attributes;
+	}
+
+	protected void changed() {
+		attributes = null;
+		version++;
+	}
+
 	/**
 	 * Returns properties formatted for inclusion in an SVG tag
 	 *
@@ -126,11 +226,11 @@ public class Stroke {
 		String s = "stroke=\"" + color + "\"";
 
 		if(width != 1.0) {
-			s += " stroke-width=\"" + width  + "\"";
+			s += " stroke-width=\"" + NumberUtil.format(width) + "\"";
 		}
 
 		if(miterLimit != 4.0) {
-			s += " stroke-miterlimit=\"" + miterLimit + "\"";
+			s += " stroke-miterlimit=\"" + NumberUtil.format(miterLimit) + "\"";
 		}
 
 		if(dashArray != null) {
@@ -138,7 +238,7 @@ public class Stroke {
 			Iterator<Double> it = dashArray.iterator();
 			while(it.hasNext()) {
 				double d = it.next();
-				s += "" + d;
+				s += NumberUtil.format(d);
 				if(it.hasNext()) {
 					s += ",";
 				}
@@ -147,11 +247,11 @@ public class Stroke {
 		}
 
 		if(dashOffset != 0.0) {
-			s += " stroke-dashoffset=\"" + dashOffset + "\"";
+			s += " stroke-dashoffset=\"" + NumberUtil.format(dashOffset) + "\"";
 		}
 
 		if(opacity != 1.0) {
-			s += " stroke-opacity=\"" + opacity + "\"";
+			s += " stroke-opacity=\"" + NumberUtil.format(opacity) + "\"";
 		}
 
 		return s;
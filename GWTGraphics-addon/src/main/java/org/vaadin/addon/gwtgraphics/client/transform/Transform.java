@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.vaadin.addon.gwtgraphics.client.impl.util.NumberUtil;
+
 public abstract class Transform {
 
 	public enum TransformType {
@@ -104,7 +106,7 @@ public abstract class Transform {
 		Iterator<Double> it = values.iterator();
 		while(it.hasNext()) {
 			double value = it.next();
-			tag += value;
+			tag += NumberUtil.format(value);
 			if(it.hasNext()) {
 				tag += ",";
 			}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.vaadin.addon.gwtgraphics.client.DrawingArea;
+import org.vaadin.addon.gwtgraphics.client.Group;
+import org.vaadin.addon.gwtgraphics.client.shape.Circle;
+import org.vaadin.addon.gwtgraphics.client.shape.Path;
+import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
+
+import com.google.gwt.junit.GWTMockUtilities;
+
+/**
+ * Renders scenes without a browser, with the rendering backend disarmed.
+ */
+public class SVGSerializerTest {
+
+	@BeforeClass
+	public static void disarm() {
+		GWTMockUtilities.disarm();
+	}
+
+	@AfterClass
+	public static void restore() {
+		GWTMockUtilities.restore();
+	}
+
+	@Test
+	public void serializesHeadlessDrawingArea() {
+		DrawingArea area = new DrawingArea(200, 100);
+		area.add(new Circle(10, 20, 5));
+		Group group = new Group();
+		group.setPosition(50, 0);
+		group.add(new Rectangle(0, 0, 30, 40));
+		Path path = new Path(0, 0);
+		path.lineTo(10, 10);
+		path.close();
+		group.add(path);
+		area.add(group);
+
+		String style = " fill=\"white\" stroke=\"black\" stroke-width=\"1\""
+				+ " stroke-opacity=\"1\" stroke-miterlimit=\"4\"";
+		assertEquals("<svg xmlns=\"http://www.w3.org/2000/svg\""
+				+ " xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+				+ " overflow=\"hidden\" width=\"200\" height=\"100\">"
+				+ "<defs></defs>"
+				+ "<circle r=\"5\"" + style
+				+ " transform=\"matrix(1,0,0,1,10,20)\"/>"
+				+ "<g" + style + " transform=\"matrix(1,0,0,1,50,0)\">"
+				+ "<rect" + style + " width=\"30\" height=\"40\""
+				+ " transform=\"matrix(1,0,0,1,0,0)\"/>"
+				+ "<path shape-rendering=\"geometricPrecision\"" + style
+				+ " transform=\"matrix(1,0,0,1,0,0)\" d=\" M0 0 L10 10 z\"/>"
+				+ "</g></svg>", SVGSerializer.toSVG(area));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 Henri Kerola
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.vaadin.addon.gwtgraphics.client.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.vaadin.addon.gwtgraphics.client.shape.path.PathData;
+
+public class SVGPathParserTest {
+
+	private static String parse(String d) {
+		PathData data = new PathData(4);
+		SVGPathParser.parse(d, data);
+		StringBuilder out = new StringBuilder();
+		data.appendSVG(out, 0, data.size());
+		return out.toString().trim();
+	}
+
+	private static void assertError(String d, int index) {
+		try {
+			parse(d);
+			fail("No error for " + d);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(),
+					e.getMessage().contains(" at index " + index + " "));
+		}
+	}
+
+	@Test
+	public void repeatsCommandsImplicitly() {
+		assertEquals("M10 20 L30 40 L50 60", parse("M10 20L30 40 50 60"));
+		assertEquals("M5 5 l10 0 l0 5", parse("m5 5 10 0 0 5"));
+		assertEquals("M0 0 L1 1 L2 2 C1 2 3 4 5 6 C7 8 9 10 11 12",
+				parse("M0 0 1 1 2 2C1 2 3 4 5 6 7 8 9 10 11 12"));
+	}
+
+	@Test
+	public void scansCompactNumbers() {
+		assertEquals("M1 -2.5 L0.5 5 L0.1 -3",
+				parse("M1-2.5.5.5e1 1E-1-3"));
+		assertEquals("M0 0 L1 2", parse("M0,0\tL+1\n,\r2"));
+	}
+
+	@Test
+	public void convertsHorizontalAndVerticalLines() {
+		assertEquals("M0 0 l10 0 l0 -5 L2 -5 L2 8", parse("M0,0h10v-5H2V8"));
+	}
+
+	@Test
+	public void readsCompactArcFlags() {
+		assertEquals("M0 0 a10,10 0 1,0 20,0", parse("M0 0a10 10 0 1020 0"));
+		assertEquals("M0 0 A5,5 30 0,1 10,10", parse("M0 0A5 5 30 0,1 10 10"));
+	}
+
+	@Test
+	public void reflectsSmoothCurveControlPoints() {
+		assertEquals("M0 0 C1 2 3 4 5 6 C7 8 9 10 11 12",
+				parse("M0 0C1 2 3 4 5 6S9 10 11 12"));
+		// without a preceding curve the current point is the control point
+		assertEquals("M0 0 c0 0 2 2 4 0", parse("M0 0s2 2 4 0"));
+		assertEquals("M0 0 C6.667 0 10 3.333 10 10"
+				+ " C10 16.667 10 23.333 10 30",
+				parse("M0 0Q10 0 10 10T10 30"));
+		assertEquals("M0 0 C0 0 1 1 3 3", parse("M0 0T3 3"));
+	}
+
+	@Test
+	public void movesRelativeToSubPathStartAfterClose() {
+		assertEquals("M10 10 l5 0 z m2 2 L20 12", parse("M10 10h5zm2 2H20"));
+		assertEquals("M0 0 l1 1 z l2 2", parse("M0 0l1 1Z l2 2"));
+	}
+
+	@Test
+	public void roundTripsThroughAppendSVG() {
+		String d = parse("M10 10h5v5a3 3 0 0 1 -3 3C1 2 3 4 5 6s1 1 2 2Q0 0 1 1z");
+		assertEquals(d, parse(d));
+	}
+
+	@Test
+	public void reportsErrorPositions() {
+		assertError("L1 1", 0);
+		assertError("M1", 2);
+		assertError("M1 x", 3);
+		assertError("M0 0 1", 6);
+		assertError("M0 0A1 1 0 2 0 1 1", 11);
+		assertError("M0 0z 1 1", 6);
+	}
+}
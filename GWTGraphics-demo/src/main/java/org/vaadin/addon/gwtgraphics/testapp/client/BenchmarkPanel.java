@@ -0,0 +1,72 @@
+package org.vaadin.addon.gwtgraphics.testapp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vaadin.addon.gwtgraphics.client.DrawingArea;
+import org.vaadin.addon.gwtgraphics.client.RedrawScheduler;
+import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Button;
+import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.HorizontalPanel;
+import com.google.gwt.user.client.ui.VerticalPanel;
+
+/**
+ * Compares adding objects one by one with {@link DrawingArea#addAll} on a
+ * separate DrawingArea. Each measurement includes the pending redraws and a
+ * forced layout, so that the cost of style invalidation is counted.
+ */
+public class BenchmarkPanel extends VerticalPanel {
+
+	private final DrawingArea area = new DrawingArea(400, 200);
+
+	private final HTML results = new HTML();
+
+	public BenchmarkPanel() {
+		HorizontalPanel buttons = new HorizontalPanel();
+		for (final int count : new int[] { 1000, 10000, 100000 }) {
+			Button b = new Button(count / 1000 + "k objects");
+			b.addClickHandler(event -> run(count));
+			buttons.add(b);
+		}
+		add(buttons);
+		add(results);
+		add(area);
+	}
+
+	private void run(int count) {
+		area.clear();
+		double single = measure(count, false);
+		area.clear();
+		double batch = measure(count, true);
+		results.setHTML(results.getHTML() + count + " objects: add " + single
+				+ " ms, addAll " + batch + " ms<br/>");
+	}
+
+	private double measure(int count, boolean batch) {
+		List<VectorObject> objects = new ArrayList<VectorObject>(count);
+		for (int i = 0; i < count; i++) {
+			objects.add(new Rectangle(i % 400, (i / 400) % 200, 4, 4));
+		}
+		Duration duration = new Duration();
+		if (batch) {
+			area.addAll(objects);
+		} else {
+			for (VectorObject vo : objects) {
+				area.add(vo);
+			}
+		}
+		RedrawScheduler.get().flush();
+		forceLayout(area.getElement());
+		return duration.elapsedMillis();
+	}
+
+	private native void forceLayout(Element element) /*-{
+		element.getBoundingClientRect();
+		element.offsetHeight;
+	}-*/;
+}
@@ -0,0 +1,139 @@
+package org.vaadin.addon.gwtgraphics.testapp.client;
+
+import java.util.Random;
+
+import org.vaadin.addon.gwtgraphics.client.Bounds;
+import org.vaadin.addon.gwtgraphics.client.DrawingArea;
+import org.vaadin.addon.gwtgraphics.client.RedrawScheduler;
+import org.vaadin.addon.gwtgraphics.client.VectorObject;
+import org.vaadin.addon.gwtgraphics.client.shape.Rectangle;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Button;
+import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.HorizontalPanel;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import com.google.gwt.user.client.ui.VerticalPanel;
+
+/**
+ * Measures the hit testing of mouse events on scenes of 1k, 10k and 100k
+ * rectangles. The rectangles are placed at random in a square whose area
+ * grows with their number, so that the density of the scene stays the same
+ * and only its size changes. Random points are then hit tested through the
+ * spatial index of the DrawingArea, with a linear scan over all objects and
+ * as synthetic mousemove events dispatched to the DrawingArea.
+ */
+public class HitTestBenchmarkPanel extends VerticalPanel {
+
+	private static final int QUERIES = 1000;
+
+	/**
+	 * Side of the rectangles in pixels.
+	 */
+	private static final int SIZE = 10;
+
+	/**
+	 * Area of the scene per rectangle in square pixels. A point is covered
+	 * by a quarter of a rectangle on average.
+	 */
+	private static final int AREA_PER_OBJECT = 4 * SIZE * SIZE;
+
+	private final ScrollPanel scroll = new ScrollPanel();
+
+	private final HTML results = new HTML();
+
+	public HitTestBenchmarkPanel() {
+		HorizontalPanel buttons = new HorizontalPanel();
+		for (final int count : new int[] { 1000, 10000, 100000 }) {
+			Button b = new Button(count / 1000 + "k objects");
+			b.addClickHandler(event -> run(count));
+			buttons.add(b);
+		}
+		scroll.setSize("400px", "200px");
+		add(buttons);
+		add(results);
+		add(scroll);
+	}
+
+	private void run(int count) {
+		int side = (int) Math.ceil(Math.sqrt((double) count * AREA_PER_OBJECT));
+		DrawingArea area = new DrawingArea(side, side);
+		scroll.setWidget(area);
+		Random random = new Random(count);
+		for (int i = 0; i < count; i++) {
+			area.add(new Rectangle(random.nextInt(side - SIZE), random
+					.nextInt(side - SIZE), SIZE, SIZE));
+		}
+		RedrawScheduler.get().flush();
+
+		int[] xs = new int[QUERIES];
+		int[] ys = new int[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			xs[i] = random.nextInt(side);
+			ys[i] = random.nextInt(side);
+		}
+
+		// the first query builds the index
+		Duration duration = new Duration();
+		area.getObjectsAt(0, 0);
+		double build = duration.elapsedMillis();
+
+		int hits = 0;
+		duration = new Duration();
+		for (int i = 0; i < QUERIES; i++) {
+			hits += area.getObjectsAt(xs[i], ys[i]).size();
+		}
+		double indexed = duration.elapsedMillis();
+
+		int scanned = 0;
+		duration = new Duration();
+		for (int i = 0; i < QUERIES; i++) {
+			for (int j = 0; j < area.getVectorObjectCount(); j++) {
+				if (area.getVectorObject(j).contains(xs[i], ys[i])) {
+					scanned++;
+				}
+			}
+		}
+		double linear = duration.elapsedMillis();
+
+		// objects whose bounds contain the point, as returned by the index
+		int candidates = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			for (int j = 0; j < area.getVectorObjectCount(); j++) {
+				Bounds b = area.getVectorObject(j).getBounds();
+				if (b != null && b.contains(xs[i], ys[i])) {
+					candidates++;
+				}
+			}
+		}
+
+		Element element = area.getElement();
+		duration = new Duration();
+		for (int i = 0; i < QUERIES; i++) {
+			int x = area.getAbsoluteLeft() + xs[i];
+			int y = area.getAbsoluteTop() + ys[i];
+			element.dispatchEvent(Document.get().createMouseMoveEvent(0, x,
+					y, x, y, false, false, false, false, 0));
+		}
+		double dispatch = duration.elapsedMillis();
+
+		results.setHTML(results.getHTML() + count + " objects in " + side
+				+ "x" + side + " px, per query: getObjectsAt "
+				+ perQuery(indexed) + " \u00b5s, linear scan "
+				+ perQuery(linear) + " \u00b5s, mousemove "
+				+ perQuery(dispatch) + " \u00b5s, "
+				+ average(candidates) + " candidates, " + average(hits)
+				+ " hits (" + scanned
+				+ " by the scan); index built in " + build + " ms<br/>");
+	}
+
+	private static double perQuery(double millis) {
+		return Math.round(millis * 1000 / QUERIES * 10) / 10.0;
+	}
+
+	private static double average(int total) {
+		return Math.round(total * 10.0 / QUERIES) / 10.0;
+	}
+}
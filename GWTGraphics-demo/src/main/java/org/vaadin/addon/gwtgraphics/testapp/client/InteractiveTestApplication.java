@@ -43,6 +43,10 @@ public class InteractiveTestApplication extends HorizontalPanel {
 		sourceCodePanel.setContent(code);
 		vPanel.add(sourceCodePanel);
 
+		DisclosurePanel benchmarkPanel = new DisclosurePanel("Benchmarks");
+		benchmarkPanel.setContent(new BenchmarkPanel());
+		vPanel.add(benchmarkPanel);
+
 		Button b = new Button("Clear");
 		vPanel.add(b);
 		b.addClickHandler(new ClickHandler() {
@@ -51,6 +55,11 @@ public class InteractiveTestApplication extends HorizontalPanel {
 			}
 		});
 
+		DisclosurePanel hitTestPanel = new DisclosurePanel(
+				"Hit testing benchmark");
+		hitTestPanel.setContent(new HitTestBenchmarkPanel());
+		vPanel.add(hitTestPanel);
+
 		editPanel = new EditorPanel(metadata);
 		add(editPanel);
 